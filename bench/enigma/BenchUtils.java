@@ -0,0 +1,168 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+/** Machines and messages shared by the benchmarks.
+ *  @author Michelle
+ */
+class BenchUtils {
+
+    /** The naval rotors of testing/correct/default.conf: name, type and
+     *  notches, and cycles. */
+    static final String[][] NAVAL = {
+        { "I", "MQ", "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)" },
+        { "II", "ME", "(FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)" },
+        { "III", "MV", "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)" },
+        { "IV", "MJ", "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)" },
+        { "V", "MZ", "(AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)" },
+        { "Beta", "N", "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)" },
+        { "B", "R", "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) "
+                    + "(RX) (SZ) (TV)" },
+    };
+
+    /** Return a five-slot, three-pawl machine over the upper-case
+     *  alphabet holding B Beta III IV I at AXLE with a plugboard. */
+    static Machine navalMachine() {
+        Alphabet alpha = new Alphabet();
+        List<Rotor> rotors = new ArrayList<Rotor>();
+        for (String[] spec : NAVAL) {
+            Permutation perm = new Permutation(spec[2], alpha);
+            switch (spec[1].charAt(0)) {
+            case 'M':
+                rotors.add(new MovingRotor(spec[0], perm,
+                                           spec[1].substring(1)));
+                break;
+            case 'N':
+                rotors.add(new FixedRotor(spec[0], perm));
+                break;
+            default:
+                rotors.add(new Reflector(spec[0], perm));
+                break;
+            }
+        }
+        Machine m = new Machine(alpha, 5, 3, rotors);
+        m.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", alpha));
+        return m;
+    }
+
+    /** Return a random message of LEN upper-case letters, with a space
+     *  after every fifth, generated from SEED. */
+    static char[] message(int len, long seed) {
+        Random random = new Random(seed);
+        char[] result = new char[len];
+        for (int i = 0; i < len; i += 1) {
+            result[i] = i % 6 == 5 ? ' ' : (char) ('A' + random.nextInt(26));
+        }
+        return result;
+    }
+
+    /** Return a string of SIZE distinct characters, usable in a
+     *  configuration file, that are SPACING apart in code (apart from
+     *  skipping those that are not). */
+    static String symbols(int size, int spacing) {
+        StringBuilder result = new StringBuilder();
+        for (int c = 'A'; result.length() < size; c += spacing) {
+            if (c > Character.MAX_VALUE) {
+                throw new IllegalArgumentException("alphabet too large");
+            }
+            if (!Character.isWhitespace(c) && !Character.isISOControl(c)
+                && !Character.isSurrogate((char) c)
+                && c != '(' && c != ')' && c != '*') {
+                result.append((char) c);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return the text of a configuration file with an alphabet of
+     *  ALPHASIZE characters SPACING apart (see symbols), NUMROTORS slots
+     *  of which all but the reflector move, and NUMROTORS - 1 moving
+     *  rotors "M1" ... and a reflector "R" with random wirings generated
+     *  from SEED.  Each moving rotor has one notch. */
+    static String configText(int alphaSize, int spacing, int numRotors,
+                             long seed) {
+        Random random = new Random(seed);
+        String chars = symbols(alphaSize, spacing);
+        StringBuilder result = new StringBuilder();
+        result.append(chars).append('\n');
+        result.append(numRotors).append(' ').append(numRotors - 1)
+            .append('\n');
+        for (int r = 1; r < numRotors; r += 1) {
+            result.append(" M").append(r).append(" M")
+                .append(chars.charAt(random.nextInt(alphaSize)));
+            result.append(cycles(chars, random)).append('\n');
+        }
+        result.append(" R R");
+        List<Character> order = shuffled(chars, random);
+        for (int i = 0; i + 1 < alphaSize; i += 2) {
+            result.append(" (").append(order.get(i)).append(order.get(i + 1))
+                .append(')');
+        }
+        result.append('\n');
+        return result.toString();
+    }
+
+    /** Return the cycles, each preceded by a blank, of a random
+     *  permutation of CHARS chosen by RANDOM. */
+    static String cycles(String chars, Random random) {
+        StringBuilder result = new StringBuilder();
+        List<Character> order = shuffled(chars, random);
+        int start = 0;
+        while (start < chars.length()) {
+            int end = Math.min(chars.length(),
+                               start + 1 + random.nextInt(chars.length()));
+            result.append(" (");
+            for (int i = start; i < end; i += 1) {
+                result.append(order.get(i));
+            }
+            result.append(')');
+            start = end;
+        }
+        return result.toString();
+    }
+
+    /** Return a machine configured by configText(ALPHASIZE, SPACING,
+     *  NUMROTORS, SEED), with its rotors inserted and at their 0
+     *  settings, and no plugboard. */
+    static Machine randomMachine(int alphaSize, int spacing, int numRotors,
+                                 long seed) {
+        Machine m = new Machine(Main.readConfig(new Scanner(
+                configText(alphaSize, spacing, numRotors, seed))));
+        String[] names = new String[numRotors];
+        names[0] = "R";
+        for (int r = 1; r < numRotors; r += 1) {
+            names[r] = "M" + r;
+        }
+        m.insertRotors(names);
+        return m;
+    }
+
+    /** Return a random message of LEN characters from the alphabet of
+     *  M, generated from SEED. */
+    static String message(Machine m, int len, long seed) {
+        Random random = new Random(seed);
+        Alphabet alpha = m.alphabet();
+        char[] result = new char[len];
+        for (int i = 0; i < len; i += 1) {
+            result[i] = alpha.toChar(random.nextInt(alpha.size()));
+        }
+        return new String(result);
+    }
+
+    /** Return the characters of CHARS in an order chosen by RANDOM. */
+    private static List<Character> shuffled(String chars, Random random) {
+        List<Character> result = new ArrayList<Character>();
+        for (char c : chars.toCharArray()) {
+            result.add(c);
+        }
+        Collections.shuffle(result, random);
+        return result;
+    }
+
+}
@@ -0,0 +1,58 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/** Measures the throughput of Machine.convertParallel against the number
+ *  of cores it is given, with the sequential conversion as a baseline.
+ *  Usage: java enigma.ParallelThroughput [LENGTH [ROUNDS]].
+ *  @author Michelle
+ */
+public class ParallelThroughput {
+
+    /** Run the benchmark on a message of ARGS[0] characters (default
+     *  2^24), timing the best of ARGS[1] rounds (default 5). */
+    public static void main(String... args) {
+        int len = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 24;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        char[] in = BenchUtils.message(len, 61);
+        char[] expected = new char[len];
+        char[] out = new char[len];
+
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r += 1) {
+            Machine m = BenchUtils.navalMachine();
+            long start = System.nanoTime();
+            m.convert(in, 0, len, expected, 0);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        report("sequential", len, best);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int p = 1; p <= cores; p = p < cores && 2 * p > cores
+                 ? cores : 2 * p) {
+            ForkJoinPool pool = new ForkJoinPool(p);
+            best = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r += 1) {
+                Machine m = BenchUtils.navalMachine();
+                Arrays.fill(out, '\0');
+                long start = System.nanoTime();
+                m.convertParallel(in, 0, len, out, 0, pool);
+                best = Math.min(best, System.nanoTime() - start);
+                if (!Arrays.equals(expected, out)) {
+                    throw new AssertionError("parallel output differs");
+                }
+            }
+            pool.shutdown();
+            report(p + " cores", len, best);
+        }
+    }
+
+    /** Print the throughput of converting LEN characters in NANOS
+     *  nanoseconds, labelled LABEL. */
+    private static void report(String label, int len, long nanos) {
+        System.out.printf("%-12s %8.1f ms %10.2f Mchar/s%n", label,
+                          nanos / 1e6, len * 1e3 / nanos);
+    }
+
+}
@@ -0,0 +1,130 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Measures the throughput and latency of Server under many concurrent
+ *  clients, each of which sends a series of jobs over its own
+ *  connections.  Usage:
+ *  java enigma.ServerLoad [CLIENTS [JOBS [LENGTH [PORT]]]].
+ *  @author Michelle
+ */
+public class ServerLoad {
+
+    /** Run ARGS[0] clients (default 256), each sending ARGS[1] jobs
+     *  (default 20) of a message of ARGS[2] characters (default 4096),
+     *  to a server on loopback port ARGS[3], or to one started in this
+     *  JVM on the naval machine if there is no ARGS[3]. */
+    public static void main(String... args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int jobs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int len = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        Server server = null;
+        int port;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            server = new Server(BenchUtils.navalMachine().spec(), 0);
+            port = server.port();
+            Server running = server;
+            Thread serving = new Thread(() -> {
+                try {
+                    running.serve();
+                } catch (IOException excp) {
+                    return;
+                }
+            });
+            serving.setDaemon(true);
+            serving.start();
+        }
+        InetSocketAddress address =
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        byte[] job = ("* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+                      + new String(BenchUtils.message(len, 61)) + "\n")
+            .getBytes(StandardCharsets.US_ASCII);
+        String expected = run(address, job);
+
+        run(address, job, clients, Math.max(1, jobs / 4), expected);
+        long start = System.nanoTime();
+        long[] latencies = run(address, job, clients, jobs, expected);
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        int n = latencies.length;
+        System.out.printf("%d clients x %d jobs of %d chars%n",
+                          clients, jobs, len);
+        System.out.printf("throughput %10.1f jobs/s %8.2f Mchar/s%n",
+                          n * 1e9 / elapsed, (double) n * len * 1e3 / elapsed);
+        System.out.printf("latency    p50 %8.3f ms  p99 %8.3f ms  "
+                          + "max %8.3f ms%n",
+                          latencies[n / 2] / 1e6,
+                          latencies[(int) Math.min(n - 1, n * 99L / 100)] / 1e6,
+                          latencies[n - 1] / 1e6);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /** Have CLIENTS threads each send JOBS copies of JOB to ADDRESS,
+     *  checking each reply against EXPECTED.  Return the latencies in
+     *  nanoseconds of all the jobs. */
+    private static long[] run(InetSocketAddress address, byte[] job,
+                              int clients, int jobs, String expected)
+        throws InterruptedException {
+        long[] latencies = new long[clients * jobs];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c += 1) {
+            int base = c * jobs;
+            threads[c] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < jobs; j += 1) {
+                        long start = System.nanoTime();
+                        String reply = run(address, job);
+                        latencies[base + j] = System.nanoTime() - start;
+                        if (!reply.equals(expected)) {
+                            throw new AssertionError("reply differs");
+                        }
+                    }
+                } catch (IOException | AssertionError excp) {
+                    failure.compareAndSet(null, excp);
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+        return latencies;
+    }
+
+    /** Return the reply to JOB from the server at ADDRESS. */
+    private static String run(InetSocketAddress address, byte[] job)
+        throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            ByteBuffer request = ByteBuffer.wrap(job);
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            channel.shutdownOutput();
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            ByteBuffer buf = ByteBuffer.allocate(1 << 14);
+            while (channel.read(buf) >= 0) {
+                reply.write(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+            return new String(reply.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+
+}
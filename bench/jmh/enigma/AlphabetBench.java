@@ -0,0 +1,67 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures Alphabet.toInt on dense alphabets (SPACING 1, looked up in a
+ *  direct table) and sparse ones (looked up by hashing).
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AlphabetBench {
+
+    /** Number of characters looked up per invocation. */
+    static final int PROBES = 1024;
+
+    /** Alphabet size. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Distance in code between successive alphabet characters. */
+    @Param({ "1", "31" })
+    public int spacing;
+
+    /** Create the alphabet and the characters to look up. */
+    @Setup
+    public void setUp() {
+        _alphabet = new Alphabet(BenchUtils.symbols(size, spacing));
+        Random random = new Random(61);
+        _probes = new char[PROBES];
+        for (int i = 0; i < PROBES; i += 1) {
+            _probes[i] = _alphabet.toChar(random.nextInt(size));
+        }
+    }
+
+    /** Look up every probe character. */
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void toInt(Blackhole sink) {
+        for (char c : _probes) {
+            sink.consume(_alphabet.toInt(c));
+        }
+    }
+
+    /** The alphabet under test. */
+    private Alphabet _alphabet;
+    /** Characters to look up. */
+    private char[] _probes;
+}
@@ -0,0 +1,73 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures parsing a configuration file with Main.readConfig, and
+ *  loading the same configuration compiled by ConfigImage.
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConfigBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Number of rotor slots; the configuration describes one rotor per
+     *  slot. */
+    @Param({ "3", "5", "8" })
+    public int rotors;
+
+    /** Create the configuration text and its image file. */
+    @Setup
+    public void setUp() throws IOException {
+        _config = BenchUtils.configText(size, 1, rotors, 61);
+        _image = File.createTempFile("enigma", ".img");
+        ConfigImage.write(Main.readConfig(new Scanner(_config)),
+                          _image.getPath());
+    }
+
+    /** Remove the image file. */
+    @TearDown
+    public void tearDown() {
+        _image.delete();
+    }
+
+    /** Parse the configuration. */
+    @Benchmark
+    public MachineSpec readConfig() {
+        return Main.readConfig(new Scanner(_config));
+    }
+
+    /** Map and load the compiled image. */
+    @Benchmark
+    public MachineSpec readImage() {
+        return ConfigImage.read(_image.getPath());
+    }
+
+    /** The configuration file contents. */
+    private String _config;
+    /** The compiled configuration. */
+    private File _image;
+}
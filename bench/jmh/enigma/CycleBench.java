@@ -0,0 +1,61 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures parsing the cycles of a random permutation with the
+ *  Permutation constructor and with the legacy parser it replaced.  The
+ *  largest size uses nearly every char that may appear in cycle
+ *  notation; whitespace and parentheses cannot be alphabet characters,
+ *  so a full 65,536-character alphabet is impossible.
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CycleBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "256", "4096", "16384", "63000" })
+    public int size;
+
+    /** Create the alphabet and the cycles of a random permutation. */
+    @Setup
+    public void setUp() {
+        String chars = BenchUtils.symbols(size, 1);
+        _alphabet = new Alphabet(chars);
+        _cycles = BenchUtils.cycles(chars, new Random(61));
+    }
+
+    /** Parse with the one-pass parser. */
+    @Benchmark
+    public Permutation parse() {
+        return new Permutation(_cycles, _alphabet);
+    }
+
+    /** Parse with the legacy parser. */
+    @Benchmark
+    public int[][] legacy() {
+        return LegacyCycles.parse(_cycles, _alphabet);
+    }
+
+    /** The alphabet permuted. */
+    private Alphabet _alphabet;
+    /** The cycles parsed. */
+    private String _cycles;
+}
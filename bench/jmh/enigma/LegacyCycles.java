@@ -0,0 +1,56 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The cycle-notation parser that Permutation used before it was
+ *  replaced by a one-pass parser, kept for comparison in CycleBench.
+ *  Its indexOf searches make it quadratic in the length of the cycles.
+ *  @author Michelle
+ */
+class LegacyCycles {
+
+    /** Return the forward and inverse tables of the permutation of ALPH
+     *  given by CYCLES, as the Permutation(String, Alphabet) constructor
+     *  formerly computed them. */
+    static int[][] parse(String cycles, Alphabet alph) {
+        for (int i = 0; i < cycles.length(); i++) {
+            char c = cycles.charAt(i);
+            if (!(alph.contains(c))) {
+                if ((!(c == '(' || c == ')' || Character.isWhitespace(c)))) {
+                    throw new EnigmaException("Not included in Alphabet");
+                }
+            }
+        }
+
+        int[] forward = new int[alph.size()];
+        int[] inverse = new int[alph.size()];
+        Arrays.fill(forward, -1);
+
+        int counter = 0;
+        for (int i = 0; i < cycles.length() - 1; i++) {
+            char currChar = cycles.charAt(i);
+            if (!alph.contains(currChar)) {
+                continue;
+            }
+            char newChar;
+            if (cycles.charAt(i + 1) == ')') {
+                newChar = cycles.charAt(cycles.indexOf('(', counter) + 1);
+                counter = i;
+            } else {
+                newChar = cycles.charAt(cycles.indexOf(currChar) + 1);
+            }
+            forward[alph.toInt(currChar)] = alph.toInt(newChar);
+        }
+
+        for (int i = 0; i < alph.size(); i++) {
+            if (forward[i] == -1) {
+                forward[i] = i;
+            }
+        }
+        for (int i = 0; i < alph.size(); i++) {
+            inverse[forward[i]] = i;
+        }
+        return new int[][] { forward, inverse };
+    }
+
+}
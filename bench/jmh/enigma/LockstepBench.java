@@ -0,0 +1,100 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures converting a batch of messages, each with its own settings,
+ *  one machine at a time with Machine.convert(String), and all together
+ *  with the scalar Lockstep and with whatever Lockstep.create returns
+ *  (VectorLockstep when ../vector is on the class path and the
+ *  jdk.incubator.vector module is added).  Times are per batch.
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LockstepBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "256" })
+    public int size;
+
+    /** Number of rotor slots, including the reflector's. */
+    @Param({ "5" })
+    public int rotors;
+
+    /** Number of messages in the batch. */
+    @Param({ "16", "256" })
+    public int messages;
+
+    /** Message length. */
+    @Param({ "64", "1024" })
+    public int length;
+
+    /** Create the machines, messages, and engines. */
+    @Setup
+    public void setUp() {
+        Machine m = BenchUtils.randomMachine(size, 1, rotors, 61);
+        Random random = new Random(61);
+        _machines = new Machine[messages];
+        _messages = new String[messages];
+        for (int k = 0; k < messages; k += 1) {
+            _machines[k] = m.copy();
+            for (int i = 1; i < rotors; i += 1) {
+                _machines[k].getRotor(i).set(random.nextInt(size));
+            }
+            _messages[k] = BenchUtils.message(m, length, k);
+        }
+        _scalar = new Lockstep(m.spec(), LANES);
+        _created = Lockstep.create(m.spec(), LANES);
+    }
+
+    /** Convert each message with a copy of its machine. */
+    @Benchmark
+    public String[] machine() {
+        String[] result = new String[messages];
+        for (int k = 0; k < messages; k += 1) {
+            result[k] = _machines[k].copy().convert(_messages[k]);
+        }
+        return result;
+    }
+
+    /** Convert the messages with the scalar engine. */
+    @Benchmark
+    public String[] scalar() {
+        return _scalar.convert(_machines, _messages);
+    }
+
+    /** Convert the messages with the engine from Lockstep.create. */
+    @Benchmark
+    public String[] created() {
+        return _created.convert(_machines, _messages);
+    }
+
+    /** Number of lanes of the engines. */
+    private static final int LANES = 16;
+
+    /** The machine for each message, at its starting settings. */
+    private Machine[] _machines;
+    /** The messages to convert. */
+    private String[] _messages;
+    /** A scalar engine. */
+    private Lockstep _scalar;
+    /** The engine from Lockstep.create. */
+    private Lockstep _created;
+}
@@ -0,0 +1,56 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures Machine.convert(int): stepping the rotors and converting
+ *  one character, on random machines.
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MachineBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Number of rotor slots, including the reflector's. */
+    @Param({ "3", "5", "8" })
+    public int rotors;
+
+    /** Create the machine. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.randomMachine(size, 1, rotors, 61);
+        _c = 0;
+    }
+
+    /** Convert one character, feeding each output back as the next
+     *  input. */
+    @Benchmark
+    public int convertInt() {
+        _c = _machine.convert(_c);
+        return _c;
+    }
+
+    /** The machine under test. */
+    private Machine _machine;
+    /** The next character to convert. */
+    private int _c;
+}
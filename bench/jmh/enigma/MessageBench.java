@@ -0,0 +1,60 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures Machine.convert(String) on random machines and messages.
+ *  Times are per message; with -prof gc, the allocation rate shows the
+ *  cost of the String and array copies around the conversion.
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Number of rotor slots, including the reflector's. */
+    @Param({ "3", "5", "8" })
+    public int rotors;
+
+    /** Message length. */
+    @Param({ "64", "4096", "262144" })
+    public int length;
+
+    /** Create the machine and message. */
+    @Setup
+    public void setUp() {
+        _machine = BenchUtils.randomMachine(size, 1, rotors, 61);
+        _message = BenchUtils.message(_machine, length, 61);
+    }
+
+    /** Convert the message, continuing from wherever the previous
+     *  invocation left the rotors. */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(_message);
+    }
+
+    /** The machine under test. */
+    private Machine _machine;
+    /** The message to convert. */
+    private String _message;
+}
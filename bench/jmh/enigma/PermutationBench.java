@@ -0,0 +1,102 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures Permutation.permute and Permutation.invert on the wiring of
+ *  a random rotor, and the whole-table operations compose, conjugate,
+ *  power, and cycles on it (timed per call).
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PermutationBench {
+
+    /** Number of values mapped per invocation. */
+    static final int PROBES = 1024;
+
+    /** Alphabet size. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Create the permutation and the values to map. */
+    @Setup
+    public void setUp() {
+        _perm = BenchUtils.randomMachine(size, 1, 2, 61).getRotor(1)
+            .permutation();
+        Random random = new Random(61);
+        _probes = new int[PROBES];
+        for (int i = 0; i < PROBES; i += 1) {
+            _probes[i] = random.nextInt(size);
+        }
+        _rotated = _perm.conjugate(1);
+    }
+
+    /** Permute every probe value. */
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void permute(Blackhole sink) {
+        for (int p : _probes) {
+            sink.consume(_perm.permute(p));
+        }
+    }
+
+    /** Invert every probe value. */
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void invert(Blackhole sink) {
+        for (int p : _probes) {
+            sink.consume(_perm.invert(p));
+        }
+    }
+
+    /** Compose the permutation with its conjugate, as when folding two
+     *  adjacent rotors into one table. */
+    @Benchmark
+    public Permutation compose() {
+        return _perm.compose(_rotated);
+    }
+
+    /** Conjugate the permutation by a rotation. */
+    @Benchmark
+    public Permutation conjugate() {
+        return _perm.conjugate(size / 3);
+    }
+
+    /** Raise the permutation to a large power. */
+    @Benchmark
+    public Permutation power() {
+        return _perm.power(1000000007L);
+    }
+
+    /** Decompose the permutation into cycles. */
+    @Benchmark
+    public int[][] cycles() {
+        return _perm.cycles();
+    }
+
+    /** The permutation under test. */
+    private Permutation _perm;
+    /** _perm conjugated by a rotation of one. */
+    private Permutation _rotated;
+    /** Values to map. */
+    private int[] _probes;
+}
@@ -0,0 +1,75 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures Rotor.convertForward and Rotor.convertBackward on a random
+ *  moving rotor away from its 0 setting.  Alphabets larger than
+ *  Permutation.MAX_SHIFTED_SIZE measure the untabulated path.
+ *  @author Michelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RotorBench {
+
+    /** Number of values converted per invocation. */
+    static final int PROBES = 1024;
+
+    /** Alphabet size. */
+    @Param({ "26", "256", "1024" })
+    public int size;
+
+    /** Create the rotor and the values to convert. */
+    @Setup
+    public void setUp() {
+        _rotor = BenchUtils.randomMachine(size, 1, 2, 61).getRotor(1);
+        _rotor.set(size / 3);
+        _rotor.setRing(size / 7);
+        Random random = new Random(61);
+        _probes = new int[PROBES];
+        for (int i = 0; i < PROBES; i += 1) {
+            _probes[i] = random.nextInt(size);
+        }
+    }
+
+    /** Convert every probe value right to left. */
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void convertForward(Blackhole sink) {
+        for (int p : _probes) {
+            sink.consume(_rotor.convertForward(p));
+        }
+    }
+
+    /** Convert every probe value left to right. */
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void convertBackward(Blackhole sink) {
+        for (int p : _probes) {
+            sink.consume(_rotor.convertBackward(p));
+        }
+    }
+
+    /** The rotor under test. */
+    private Rotor _rotor;
+    /** Values to convert. */
+    private int[] _probes;
+}
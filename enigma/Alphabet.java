@@ -1,21 +1,51 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, so an alphabet may include supplementary characters (those
+ *  outside the Basic Multilingual Plane, written as surrogate pairs in a
+ *  String).
  *  @author Michelle
  */
 class Alphabet {
 
-    /** A new alphabet containing CHARS. The K-th character has index
-     *  K (numbering from 0). No character may be duplicated. */
+    /** A new alphabet containing the code points of CHARS. The K-th
+     *  character has index K (numbering from 0). No character may be
+     *  duplicated. */
     Alphabet(String chars) {
         _chars = chars;
-        _charslist = chars.toCharArray();
-        for (int i = 0; i < size(); i++) {
-            for (int j = 0; j < size(); j++) {
-                if (_charslist[i] == (_charslist[j]) && i != j) {
+        _codePoints = chars.codePoints().toArray();
+        int max = 0;
+        for (int c : _codePoints) {
+            max = Math.max(max, c);
+            _supplementary |= c > Character.MAX_VALUE;
+        }
+        if (max < DIRECT_LIMIT || max / DIRECT_SPARSENESS < size()) {
+            _index = new int[max + 1];
+            Arrays.fill(_index, -1);
+            for (int i = 0; i < size(); i++) {
+                if (_index[_codePoints[i]] != -1) {
+                    throw new EnigmaException("Repeated alphabet");
+                }
+                _index[_codePoints[i]] = i;
+            }
+        } else {
+            _blocks = new int[(max >>> BLOCK_BITS) + 1][];
+            for (int i = 0; i < size(); i++) {
+                int c = _codePoints[i];
+                int[] block = _blocks[c >>> BLOCK_BITS];
+                if (block == null) {
+                    block = _blocks[c >>> BLOCK_BITS] = new int[BLOCK_SIZE];
+                    Arrays.fill(block, -1);
+                }
+                if (block[c & BLOCK_MASK] != -1) {
                     throw new EnigmaException("Repeated alphabet");
                 }
+                block[c & BLOCK_MASK] = i;
             }
         }
     }
@@ -27,32 +57,87 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _chars.length();
+        return _codePoints.length;
     }
 
-    /** Returns true if CH is in this alphabet. */
-    boolean contains(char ch) {
-        return _chars.contains("" + ch);
+    /** Returns my characters, in order, as a string. */
+    String chars() {
+        return _chars;
+    }
+
+    /** Returns true iff I contain a supplementary character, so that
+     *  toChar may not be used on all my indices. */
+    boolean supplementary() {
+        return _supplementary;
+    }
+
+    /** Returns true if CH, a code point, is in this alphabet. */
+    boolean contains(int ch) {
+        return toInt(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size(), which must be in the Basic Multilingual
+     *  Plane. */
     char toChar(int index) {
-        return _charslist[index];
+        int c = _codePoints[index];
+        if (c > Character.MAX_VALUE) {
+            throw error("character %d of alphabet is not a single char",
+                        index);
+        }
+        return (char) c;
     }
 
-    /** Returns the index of character CH which must be in
-     *  the alphabet. This is the inverse of toChar(). */
-    int toInt(char ch) {
-        for (int i = 0; i < _charslist.length; i++) {
-            if (_charslist[i] == ch) {
-                return i;
-            }
+    /** Returns the code point of character number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    int toCodePoint(int index) {
+        return _codePoints[index];
+    }
+
+    /** Returns the index of character CH, a code point (which may be a
+     *  char), which must be in the alphabet. This is the inverse of
+     *  toCodePoint() and toChar(). Returns -1 if CH is not in the
+     *  alphabet. */
+    int toInt(int ch) {
+        if (_index != null) {
+            return ch >= 0 && ch < _index.length ? _index[ch] : -1;
         }
-        return -1;
+        int top = ch >>> BLOCK_BITS;
+        if (top >= _blocks.length) {
+            return -1;
+        }
+        int[] block = _blocks[top];
+        return block == null ? -1 : block[ch & BLOCK_MASK];
     }
+
     /** charecters. **/
     private String _chars;
-    /** charecter list. **/
-    private char[] _charslist;
+    /** The code point of each character, by index. **/
+    private int[] _codePoints;
+    /** True iff some character is outside the Basic Multilingual
+     *  Plane. */
+    private boolean _supplementary;
+
+    /** Characters below this value are always looked up in a direct
+     *  table. */
+    private static final int DIRECT_LIMIT = 1024;
+    /** Above DIRECT_LIMIT, a direct table is used only if it has no more
+     *  than this many entries per character. */
+    private static final int DIRECT_SPARSENESS = 8;
+    /** Number of low-order bits of a character that select its entry
+     *  within its block of _blocks. */
+    private static final int BLOCK_BITS = 8;
+    /** Number of characters covered by one block. */
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    /** Mask selecting a character's entry within its block. */
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /** Index of each character, indexed by character, or null if the
+     *  alphabet is too sparse, in which case _blocks is used. */
+    private int[] _index;
+    /** Two-level table for sparse alphabets: the index of character C is
+     *  _blocks[C >>> BLOCK_BITS][C & BLOCK_MASK], where a null block
+     *  holds no characters.  Memory is bounded by one block per
+     *  character, and by one block per BLOCK_SIZE code points. */
+    private int[][] _blocks;
 }
@@ -16,4 +16,79 @@ public class AlphabetTest {
         Alphabet a = new Alphabet("abcde");
         assertEquals(a.toInt('e'), 4);
     }
+
+    @Test(expected = EnigmaException.class)
+    public void repeated() {
+        new Alphabet("abcdea");
+    }
+
+    @Test
+    public void sparse() {
+        String chars = "AZ\u4e00\u9fa5\uffef\u3042";
+        Alphabet a = new Alphabet(chars);
+        for (int i = 0; i < chars.length(); i++) {
+            assertEquals(i, a.toInt(chars.charAt(i)));
+            assertTrue(a.contains(chars.charAt(i)));
+        }
+        assertEquals(-1, a.toInt('B'));
+        assertFalse(a.contains('\u4e01'));
+    }
+
+    @Test
+    public void large() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '\u4e00'; c < '\u9fa6'; c++) {
+            chars.append(c);
+        }
+        Alphabet a = new Alphabet(chars.toString());
+        assertEquals(chars.length(), a.size());
+        assertEquals(0, a.toInt('\u4e00'));
+        assertEquals(chars.length() - 1, a.toInt('\u9fa5'));
+        assertEquals('\u4e01', a.toChar(1));
+        assertFalse(a.contains('A'));
+    }
+
+    @Test
+    public void supplementary() {
+        int[] points = { 'A', 0x1f600, 0x4e00, 0x20000, 0x10ffff, 0x1f601 };
+        String chars = new String(points, 0, points.length);
+        Alphabet a = new Alphabet(chars);
+        assertTrue(a.supplementary());
+        assertFalse(new Alphabet("AB\u4e00").supplementary());
+        assertEquals(points.length, a.size());
+        assertEquals(chars, a.chars());
+        for (int i = 0; i < points.length; i++) {
+            assertEquals(i, a.toInt(points[i]));
+            assertEquals(points[i], a.toCodePoint(i));
+        }
+        assertEquals('A', a.toChar(0));
+        assertEquals(-1, a.toInt(0x1f602));
+        assertEquals(-1, a.toInt(0xd83d));
+        assertEquals(-1, a.toInt(0x110000));
+        assertEquals(-1, a.toInt(-1));
+    }
+
+    @Test
+    public void largeSupplementary() {
+        StringBuilder chars = new StringBuilder();
+        for (int c = 0x20000; c < 0x2a6d7; c++) {
+            chars.appendCodePoint(c);
+        }
+        Alphabet a = new Alphabet(chars.toString());
+        assertEquals(0x2a6d7 - 0x20000, a.size());
+        assertEquals(0, a.toInt(0x20000));
+        assertEquals(a.size() - 1, a.toInt(0x2a6d6));
+        assertEquals(0x20001, a.toCodePoint(1));
+        assertFalse(a.contains('A'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void supplementaryToChar() {
+        new Alphabet("A\ud83d\ude00").toChar(1);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void repeatedSupplementary() {
+        new Alphabet("\ud83d\ude00AB\ud83d\ude00");
+    }
 }
@@ -0,0 +1,555 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext search for machine settings, after the
+ *  Turing-Welchman Bombe.  Given a crib (a stretch of plaintext) and its
+ *  position in a ciphertext, a Bombe tries every rotor order and every
+ *  combination of rotor offsets (settings less ring settings), assuming,
+ *  as the original did, that only the rightmost rotor moves while the
+ *  crib is being enciphered.  For each, it hypothesizes a plugboard
+ *  partner for the most connected letter of the crib's Menu and follows
+ *  the implications through the menu and the diagonal board.  A
+ *  hypothesis that implies no contradiction is a candidate; ring
+ *  settings are then chosen to keep the other rotors still, and the
+ *  resulting settings line is checked on a Machine.
+ *  @author Michelle
+ */
+class Bombe {
+
+    /** A Bombe for machines described by SPEC, searching for the
+     *  settings that encipher CRIB as the letters of CIPHERTEXT
+     *  starting at OFFSET.  CIPHERTEXT and CRIB contain only letters of
+     *  SPEC's alphabet. */
+    Bombe(MachineSpec spec, String ciphertext, String crib, int offset) {
+        if (spec.numPawls() < 1) {
+            throw error("a Bombe needs at least one moving rotor");
+        }
+        if (crib.isEmpty()) {
+            throw error("empty crib");
+        }
+        if (offset < 0 || offset + crib.length() > ciphertext.length()) {
+            throw error("crib does not fit in ciphertext at %d", offset);
+        }
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        _offset = offset;
+        _cipher = indices(ciphertext);
+        _crib = indices(crib);
+        _menu = new Menu(_crib,
+                         Arrays.copyOfRange(_cipher, offset,
+                                            offset + crib.length()),
+                         _size);
+    }
+
+    /** Return the alphabet indices of the characters of TEXT. */
+    private int[] indices(String text) {
+        int[] result = new int[text.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = _alphabet.toInt(text.charAt(i));
+            if (result[i] < 0) {
+                throw error("character '%c' not in alphabet", text.charAt(i));
+            }
+        }
+        return result;
+    }
+
+    /** Return the settings lines of all candidates for every rotor order
+     *  of my machines, searching on POOL. */
+    List<String> search(ForkJoinPool pool) {
+        return search(pool, rotorOrders(_spec));
+    }
+
+    /** Return the settings lines of all candidates whose rotors are in
+     *  one of ORDERS (each naming the rotors for every slot, reflector
+     *  first), searching on POOL.  The lines are in the order of ORDERS,
+     *  and then of the rotor offsets. */
+    List<String> search(ForkJoinPool pool, List<String[]> orders) {
+        for (String[] order : orders) {
+            if (order.length != _spec.numRotors()) {
+                throw error("wrong number of rotors in %s",
+                            String.join(" ", order));
+            }
+        }
+        int split = _spec.numRotors() > 2 ? _size : 1;
+        String[][] results = new String[orders.size() * split][];
+        if (results.length > 0) {
+            pool.invoke(new Search(orders, split, results,
+                                   0, results.length));
+        }
+        List<String> found = new ArrayList<String>();
+        for (String[] lines : results) {
+            found.addAll(Arrays.asList(lines));
+        }
+        return found;
+    }
+
+    /** Return every order in which the rotors of SPEC may fill its
+     *  slots: a reflector, then distinct non-moving rotors, then distinct
+     *  moving rotors. */
+    static List<String[]> rotorOrders(MachineSpec spec) {
+        List<String> reflectors = new ArrayList<String>(),
+            fixed = new ArrayList<String>(),
+            moving = new ArrayList<String>();
+        for (String name : spec.rotorNames()) {
+            Rotor rotor = spec.newRotor(name);
+            if (rotor.reflecting()) {
+                reflectors.add(name);
+            } else if (rotor.rotates()) {
+                moving.add(name);
+            } else {
+                fixed.add(name);
+            }
+        }
+        int numFixed = spec.numRotors() - 1 - spec.numPawls();
+        List<String[]> result = new ArrayList<String[]>();
+        for (String reflector : reflectors) {
+            String[] order = new String[spec.numRotors()];
+            order[0] = reflector;
+            arrange(fixed, 1, 1 + numFixed, order, () ->
+                arrange(moving, 1 + numFixed, order.length, order,
+                        () -> result.add(order.clone())));
+        }
+        return result;
+    }
+
+    /** Call EACH once for every way of filling ORDER[FROM .. TO-1] with
+     *  distinct elements of NAMES that are not already in ORDER[0 ..
+     *  FROM-1]. */
+    private static void arrange(List<String> names, int from, int to,
+                                String[] order, Runnable each) {
+        if (from == to) {
+            each.run();
+            return;
+        }
+        for (String name : names) {
+            boolean used = false;
+            for (int j = 0; j < from; j += 1) {
+                used |= name.equals(order[j]);
+            }
+            if (!used) {
+                order[from] = name;
+                arrange(names, from + 1, to, order, each);
+            }
+        }
+    }
+
+    /** Return the forward ([0]) and inverse ([1]) tables of the
+     *  permutation of the rotor named NAME at every offset, shared by
+     *  all searches. */
+    private int[][][] shiftedTables(String name) {
+        return _tables.computeIfAbsent(name, k -> {
+            Permutation perm = _spec.newRotor(k).permutation();
+            int[][][] result = new int[2][_size][];
+            for (int s = 0; s < _size; s += 1) {
+                result[0][s] = perm.shiftedForward(s);
+                result[1][s] = perm.shiftedInverse(s);
+                if (result[0][s] == null) {
+                    result[0][s] = new int[_size];
+                    result[1][s] = new int[_size];
+                    for (int c = 0; c < _size; c += 1) {
+                        result[0][s][c] =
+                            perm.wrap(perm.permute(perm.wrap(c + s)) - s);
+                        result[1][s][c] =
+                            perm.wrap(perm.invert(perm.wrap(c + s)) - s);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /** Divides the work of a search among the threads of a pool.  Work
+     *  item I covers rotor order I / SPLIT, with the offset of the
+     *  leftmost rotor after the reflector fixed at I % SPLIT when there
+     *  is more than one such rotor. */
+    private class Search extends RecursiveAction {
+
+        /** A search of work items LO .. HI-1 of ORDERS, each split
+         *  SPLIT ways, placing the candidates from item I in
+         *  RESULTS[I]. */
+        Search(List<String[]> orders, int split, String[][] results,
+               int lo, int hi) {
+            _orders = orders;
+            _split = split;
+            _results = results;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo == 1) {
+                _results[_lo] =
+                    new Scan(_orders.get(_lo / _split), _lo % _split).run();
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Search(_orders, _split, _results, _lo, mid),
+                          new Search(_orders, _split, _results, mid, _hi));
+            }
+        }
+
+        /** Rotor orders searched. */
+        private final List<String[]> _orders;
+        /** Work items per rotor order. */
+        private final int _split;
+        /** Candidates found, by work item. */
+        private final String[][] _results;
+        /** Range of work items. */
+        private final int _lo, _hi;
+    }
+
+    /** The search of one work item: the state of a single Bombe. */
+    private class Scan {
+
+        /** A scan of rotor order ORDER with the rotor after the reflector
+         *  at offset FIRST (if it is not the rightmost). */
+        Scan(String[] order, int first) {
+            _order = order;
+            _n = order.length;
+            _rotors = new Rotor[_n];
+            for (int j = 0; j < _n; j += 1) {
+                _rotors[j] = _spec.newRotor(order[j]);
+            }
+            int[][][] tables = shiftedTables(order[_n - 1]);
+            _fastForward = tables[0];
+            _fastInverse = tables[1];
+            _offsets = new int[_n];
+            if (_n > 2) {
+                _offsets[1] = first;
+            }
+            _inner = new int[_size];
+            _partner = new int[_size];
+            Arrays.fill(_partner, -1);
+            _trail = new int[_size];
+        }
+
+        /** Return the settings lines of all candidates. */
+        String[] run() {
+            do {
+                for (int j = 1; j < _n - 1; j += 1) {
+                    _rotors[j].set(_offsets[j]);
+                }
+                for (int c = 0; c < _size; c += 1) {
+                    int p = c;
+                    for (int j = _n - 2; j >= 0; j -= 1) {
+                        p = _rotors[j].convertForward(p);
+                    }
+                    for (int j = 1; j < _n - 1; j += 1) {
+                        p = _rotors[j].convertBackward(p);
+                    }
+                    _inner[c] = p;
+                }
+                for (int fast = 0; fast < _size; fast += 1) {
+                    _offsets[_n - 1] = fast;
+                    _base = fast + _offset + 1;
+                    test();
+                }
+            } while (advance());
+            return _found.toArray(new String[_found.size()]);
+        }
+
+        /** Move _offsets to the next combination for the rotors
+         *  between the second after the reflector and the rightmost,
+         *  returning false when all have been tried. */
+        private boolean advance() {
+            for (int j = _n - 2; j >= 2; j -= 1) {
+                _offsets[j] += 1;
+                if (_offsets[j] < _size) {
+                    return true;
+                }
+                _offsets[j] = 0;
+            }
+            return false;
+        }
+
+        /** Try every plugboard partner for the first root of the menu at
+         *  the current offsets, recording the candidates. */
+        private void test() {
+            int root = _menu.roots()[0];
+            for (int h = 0; h < _size; h += 1) {
+                if (hypothesize(root, h) && solve(1)) {
+                    String line = settingsLine();
+                    if (line != null) {
+                        _found.add(line);
+                    }
+                }
+                undo(0);
+            }
+        }
+
+        /** Return true iff the roots of the menu from the Kth on have
+         *  partners consistent with those assigned so far, assigning
+         *  the first such found. */
+        private boolean solve(int k) {
+            int[] roots = _menu.roots();
+            if (k == roots.length) {
+                return true;
+            }
+            if (_partner[roots[k]] != -1) {
+                return solve(k + 1);
+            }
+            for (int h = 0; h < _size; h += 1) {
+                int mark = _trailLength;
+                if (hypothesize(roots[k], h) && solve(k + 1)) {
+                    return true;
+                }
+                undo(mark);
+            }
+            return false;
+        }
+
+        /** Assume that the plugboard takes A to X, and follow the
+         *  implications, returning false on a contradiction. */
+        private boolean hypothesize(int a, int x) {
+            int next = _trailLength;
+            if (!assign(a, x)) {
+                return false;
+            }
+            while (next < _trailLength) {
+                int c = _trail[next];
+                int image = _partner[c];
+                next += 1;
+                for (int e = _menu.start(c); e < _menu.end(c); e += 1) {
+                    if (!assign(_menu.other(e),
+                                scramble(_menu.position(e), image))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Record that the plugboard swaps A and X (both ways, as the
+         *  diagonal board does), returning false if that contradicts an
+         *  earlier assignment. */
+        private boolean assign(int a, int x) {
+            if (_partner[a] == x) {
+                return true;
+            }
+            if (_partner[a] != -1 || _partner[x] != -1) {
+                return false;
+            }
+            _partner[a] = x;
+            _partner[x] = a;
+            _trail[_trailLength++] = a;
+            if (x != a) {
+                _trail[_trailLength++] = x;
+            }
+            return true;
+        }
+
+        /** Remove the assignments made since the trail was MARK long. */
+        private void undo(int mark) {
+            while (_trailLength > mark) {
+                _trailLength -= 1;
+                _partner[_trail[_trailLength]] = -1;
+            }
+        }
+
+        /** Return the image of C, without the plugboard, at crib
+         *  position POSN and the current offsets. */
+        private int scramble(int posn, int c) {
+            int k = (_base + posn) % _size;
+            return _fastInverse[k][_inner[_fastForward[k][c]]];
+        }
+
+        /** Return the settings line for the current candidate, or null
+         *  if no ring settings keep all but the rightmost rotor still
+         *  through the crib, or if the line does not in fact decipher the
+         *  crib. */
+        private String settingsLine() {
+            int window = _offset + _menu.length();
+            StringBuilder line = new StringBuilder("*");
+            for (String name : _order) {
+                line.append(' ').append(name);
+            }
+            int[] rings = new int[_n];
+            boolean leftmost = true;
+            for (int j = 1; j < _n; j += 1) {
+                Rotor rotor = _rotors[j];
+                if (!rotor.rotates()) {
+                    continue;
+                }
+                int span;
+                if (j == _n - 1) {
+                    span = leftmost ? 0 : window;
+                } else {
+                    span = leftmost ? 0 : 1;
+                }
+                leftmost = false;
+                rings[j] = quietRing(rotor, _offsets[j], span);
+                if (rings[j] < 0) {
+                    return null;
+                }
+            }
+            line.append(' ');
+            boolean ringed = false;
+            for (int j = 1; j < _n; j += 1) {
+                line.append(_alphabet.toChar((_offsets[j] + rings[j])
+                                             % _size));
+                ringed |= rings[j] != 0;
+            }
+            if (ringed) {
+                line.append(' ');
+                for (int j = 1; j < _n; j += 1) {
+                    line.append(_alphabet.toChar(rings[j]));
+                }
+            }
+            for (int c = 0; c < _size; c += 1) {
+                if (_partner[c] > c) {
+                    line.append(" (").append(_alphabet.toChar(c))
+                        .append(_alphabet.toChar(_partner[c])).append(')');
+                }
+            }
+            return deciphers(line.toString()) ? line.toString() : null;
+        }
+
+        /** Return the least ring setting for ROTOR at OFFSET such that
+         *  it is not at a notch in any of the SPAN settings starting from
+         *  its initial one, or -1 if there is none. */
+        private int quietRing(Rotor rotor, int offset, int span) {
+            for (int ring = 0; ring < _size; ring += 1) {
+                boolean quiet = true;
+                for (int t = 0; t < span && quiet; t += 1) {
+                    quiet = !rotor.atNotch((offset + ring + t) % _size);
+                }
+                if (quiet) {
+                    return ring;
+                }
+            }
+            return -1;
+        }
+
+        /** Return true iff a machine set up by SETTINGS deciphers my
+         *  crib from my ciphertext. */
+        private boolean deciphers(String settings) {
+            Machine m = new Machine(_spec);
+            Main.setUp(m, settings);
+            for (int k = 0; k < _offset + _crib.length; k += 1) {
+                int c = m.convert(_cipher[k]);
+                if (k >= _offset && c != _crib[k - _offset]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Rotor names, reflector first. */
+        private final String[] _order;
+        /** Number of rotors. */
+        private final int _n;
+        /** Rotors of _order, with ring setting 0. */
+        private final Rotor[] _rotors;
+        /** Rightmost rotor's tables at each offset. */
+        private final int[][] _fastForward, _fastInverse;
+        /** Current offset of each rotor. */
+        private final int[] _offsets;
+        /** Image of each character through all but the rightmost rotor
+         *  and back, at the current offsets. */
+        private final int[] _inner;
+        /** The plugboard partner assigned to each character, or -1. */
+        private final int[] _partner;
+        /** Characters in order of assignment. */
+        private final int[] _trail;
+        /** Number of characters in _trail. */
+        private int _trailLength;
+        /** Offset of the rightmost rotor at crib position -1 less
+         *  _offset. */
+        private int _base;
+        /** Settings lines of candidates. */
+        private final List<String> _found = new ArrayList<String>();
+    }
+
+    /** Print the settings lines of all candidates for the crib ARGS[1]
+     *  in the ciphertext in the file ARGS[2] (the standard input if
+     *  absent) for the machine configured by the file ARGS[0].  The
+     *  options --offset=N, the position of the crib in the ciphertext,
+     *  and --order="ROTOR ...", a rotor order, limit the search; without
+     *  --offset, every position at which no crib letter would encipher
+     *  to itself is tried.  Spaces in the crib and ciphertext are
+     *  ignored. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--offset=(\\d+) --order=(.+) --=(.*){2,3}",
+                                args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Bombe [--offset=N] "
+                            + "[--order=ROTORS] CONFIG CRIB [INPUT]");
+            }
+            List<String> files = options.get("--");
+            MachineSpec spec = Main.readConfig(files.get(0));
+            String crib = files.get(1).replaceAll("\\s", "");
+            StringBuilder ciphertext = new StringBuilder();
+            Scanner input = files.size() > 2 ? Main.getInput(files.get(2))
+                : new Scanner(System.in);
+            while (input.hasNext()) {
+                ciphertext.append(input.next());
+            }
+            List<String[]> orders;
+            if (options.contains("--order")) {
+                orders = new ArrayList<String[]>();
+                orders.add(options.getFirst("--order").trim().split("\\s+"));
+            } else {
+                orders = rotorOrders(spec);
+            }
+            String cipher = ciphertext.toString();
+            for (int k = 0; k + crib.length() <= cipher.length(); k += 1) {
+                if (options.contains("--offset")
+                    ? k == Integer.parseInt(options.getFirst("--offset"))
+                    : possibleOffset(cipher, crib, k)) {
+                    for (String line : new Bombe(spec, cipher, crib, k)
+                             .search(ForkJoinPool.commonPool(), orders)) {
+                        System.out.println(line);
+                    }
+                }
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return true iff no letter of CRIB is the same as the letter of
+     *  CIPHERTEXT it would lie under at OFFSET. */
+    static boolean possibleOffset(String ciphertext, String crib,
+                                  int offset) {
+        for (int i = 0; i < crib.length(); i += 1) {
+            if (crib.charAt(i) == ciphertext.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Description of the machines searched. */
+    private final MachineSpec _spec;
+    /** Their alphabet. */
+    private final Alphabet _alphabet;
+    /** Size of _alphabet. */
+    private final int _size;
+    /** Position of the crib in the ciphertext. */
+    private final int _offset;
+    /** The ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+    /** The crib, as alphabet indices. */
+    private final int[] _crib;
+    /** The menu of the crib. */
+    private final Menu _menu;
+    /** Rotor tables at every offset, by rotor name. */
+    private final ConcurrentHashMap<String, int[][][]> _tables =
+        new ConcurrentHashMap<String, int[][][]>();
+}
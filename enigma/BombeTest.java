@@ -0,0 +1,106 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Bombe and Menu classes.
+ *  @author Michelle
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** The naval machine description with rotors B, Beta, I, III, IV,
+     *  and V. */
+    private static final MachineSpec SPEC =
+        TestUtils.navalSpec("B", "Beta", "I", "III", "IV", "V");
+
+    private static final String MESSAGE =
+        "WETTERVORHERSAGEBISKAYAHEUTEREGENUNDSTURMAUSWEST";
+
+    @Test
+    public void testMenu() {
+        Menu menu = new Menu(new int[] { 0, 1, 2, 0 },
+                             new int[] { 1, 2, 0, 3 }, 26);
+        assertEquals(4, menu.length());
+        assertEquals(1, menu.roots().length);
+        assertEquals(0, menu.roots()[0]);
+        assertEquals(3, menu.end(0) - menu.start(0));
+        for (int e = menu.start(3); e < menu.end(3); e += 1) {
+            assertEquals(0, menu.other(e));
+            assertEquals(3, menu.position(e));
+        }
+        assertEquals(2, new Menu(new int[] { 0, 5 }, new int[] { 1, 6 }, 26)
+                     .roots().length);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMenuSelfEncipherment() {
+        new Menu(new int[] { 0, 1 }, new int[] { 1, 1 }, 26);
+    }
+
+    @Test
+    public void testRotorOrders() {
+        List<String[]> orders = Bombe.rotorOrders(SPEC);
+        assertEquals(4 * 3 * 2, orders.size());
+        for (String[] order : orders) {
+            assertEquals("B", order[0]);
+            assertEquals("Beta", order[1]);
+        }
+    }
+
+    /** Check that a search of ORDERS for the crib at OFFSET in MESSAGE
+     *  enciphered with SETTINGS finds a candidate whose rotors, settings,
+     *  and ring settings begin with EXPECTED, and that every candidate
+     *  deciphers the crib. */
+    private void checkSearch(String settings, int offset, int cribLength,
+                             List<String[]> orders, String expected) {
+        String cipher = TestUtils.encipher(SPEC, settings, MESSAGE);
+        String crib = MESSAGE.substring(offset, offset + cribLength);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<String> found;
+        try {
+            found = new Bombe(SPEC, cipher, crib, offset).search(pool, orders);
+        } finally {
+            pool.shutdown();
+        }
+        boolean hit = false;
+        for (String line : found) {
+            hit |= line.startsWith(expected + " (");
+            assertEquals(crib, TestUtils.encipher(SPEC, line, cipher)
+                         .substring(offset, offset + cribLength));
+        }
+        assertTrue(expected + " not in " + found, hit);
+    }
+
+    @Test
+    public void testSearch() {
+        List<String[]> orders = new ArrayList<>();
+        orders.add(new String[] { "B", "Beta", "III", "IV", "I" });
+        orders.add(new String[] { "B", "Beta", "IV", "III", "I" });
+        checkSearch("* B Beta III IV I DAER (HQ) (EX) (IP) (TR) (BY)",
+                    0, 20, orders, "* B Beta III IV I DAER");
+    }
+
+    @Test
+    public void testSearchRings() {
+        List<String[]> orders = new ArrayList<>();
+        orders.add(new String[] { "B", "Beta", "V", "I", "IV" });
+        checkSearch("* B Beta V I IV KXMK ACDB (AZ) (QW) (MN) (UR)",
+                    3, 20, orders, "* B Beta V I IV KVJK AAAB");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCribDoesNotFit() {
+        new Bombe(SPEC, "ABCDE", "XYZW", 3);
+    }
+
+}
@@ -0,0 +1,141 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** Applies a machine with a 256-character alphabet to arbitrary bytes,
+ *  treating each byte B as the character with index B.  Bytes go from
+ *  buffer to buffer in blocks of alphabet indices, with no decoding and
+ *  no Strings.  Files are converted through memory-mapped regions;
+ *  other channels through direct buffers.
+ *  @author Michelle
+ */
+class ByteProcessor {
+
+    /** A processor converting with MACHINE, whose alphabet must have 256
+     *  characters and whose settings are as it should start. */
+    ByteProcessor(Machine machine) {
+        this(machine, REGION);
+    }
+
+    /** A processor converting with MACHINE that maps files REGION bytes
+     *  at a time. */
+    ByteProcessor(Machine machine, long region) {
+        if (machine.alphabet().size() != SYMBOLS) {
+            throw error("byte mode needs a %d-character alphabet", SYMBOLS);
+        }
+        _machine = machine;
+        _region = region;
+    }
+
+    /** Convert all of IN, writing the result to OUT, through direct
+     *  buffers. */
+    void process(ReadableByteChannel in, WritableByteChannel out)
+        throws IOException {
+        ByteBuffer src = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteBuffer dst = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (in.read(src) != -1) {
+            src.flip();
+            convert(src, dst);
+            src.clear();
+            dst.flip();
+            while (dst.hasRemaining()) {
+                out.write(dst);
+            }
+            dst.clear();
+        }
+    }
+
+    /** Convert all of the file INPUT into the file OUTPUT, creating it if
+     *  need be.  If they are the same file, it is converted in place. */
+    void processFile(Path input, Path output) throws IOException {
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            try (FileChannel file =
+                 FileChannel.open(input, StandardOpenOption.READ,
+                                  StandardOpenOption.WRITE)) {
+                processMapped(file);
+            }
+            return;
+        }
+        try (FileChannel in = FileChannel.open(input);
+             FileChannel out =
+             FileChannel.open(output, StandardOpenOption.CREATE,
+                              StandardOpenOption.READ,
+                              StandardOpenOption.WRITE)) {
+            processMapped(in, out);
+        }
+    }
+
+    /** Convert the file FILE, which must be open for reading and writing,
+     *  in place, through a single read-write mapping of each region. */
+    void processMapped(FileChannel file) throws IOException {
+        long size = file.size();
+        for (long posn = 0; posn < size; posn += _region) {
+            ByteBuffer region =
+                file.map(FileChannel.MapMode.READ_WRITE, posn,
+                         Math.min(_region, size - posn));
+            convert(region.duplicate(), region);
+        }
+    }
+
+    /** Convert all of the file IN into the file OUT, which must be open
+     *  for reading and writing and is truncated first, mapping both a
+     *  region at a time. */
+    void processMapped(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        out.truncate(0);
+        for (long posn = 0; posn < size; posn += _region) {
+            long len = Math.min(_region, size - posn);
+            convert(in.map(FileChannel.MapMode.READ_ONLY, posn, len),
+                    out.map(FileChannel.MapMode.READ_WRITE, posn, len));
+        }
+    }
+
+    /** Convert the remaining bytes of IN into OUT, which must have room
+     *  for them, advancing the positions of both.  OUT may share IN's
+     *  content, starting at the same position, since each block is read
+     *  before it is written. */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        int[] block = _block;
+        while (in.hasRemaining()) {
+            int n = Math.min(in.remaining(), block.length);
+            for (int i = 0; i < n; i += 1) {
+                block[i] = in.get() & BYTE_MASK;
+            }
+            _machine.convert(block, 0, n, block, 0);
+            for (int i = 0; i < n; i += 1) {
+                out.put((byte) block[i]);
+            }
+        }
+    }
+
+    /** Size of the alphabet of byte mode. */
+    static final int SYMBOLS = 256;
+
+    /** Mask taking a byte to its unsigned value. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Default number of bytes of a file mapped at a time. */
+    static final long REGION = 1L << 26;
+
+    /** Size of the direct buffers used for channels other than files. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Number of bytes converted by each call on the machine. */
+    private static final int BLOCK_SIZE = 1 << 12;
+
+    /** The machine that converts bytes. */
+    private final Machine _machine;
+    /** Number of bytes of a file mapped at a time. */
+    private final long _region;
+    /** Alphabet indices being converted. */
+    private final int[] _block = new int[BLOCK_SIZE];
+}
@@ -0,0 +1,164 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ByteProcessor class.
+ *  @author Michelle
+ */
+public class ByteProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a random permutation of 0 .. N - 1 chosen by RANDOM that
+     *  is an involution without fixed points if REFLECT. */
+    private static int[] wiring(int n, Random random, boolean reflect) {
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < n; i += 1) {
+            order.add(i);
+        }
+        Collections.shuffle(order, random);
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            if (reflect) {
+                result[order.get(i)] = order.get(i ^ 1);
+            } else {
+                result[i] = order.get(i);
+            }
+        }
+        return result;
+    }
+
+    /** Return a four-slot machine over a 256-character alphabet, with
+     *  random wirings from SEED, at setting 0 and with notches at index
+     *  255. */
+    private static Machine machine(long seed) {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '\u0100'; c < '\u0200'; c += 1) {
+            chars.append(c);
+        }
+        Alphabet alpha = new Alphabet(chars.toString());
+        Random random = new Random(seed);
+        String notch = String.valueOf('\u01ff');
+        Machine m = new Machine(alpha, 4, 3, Arrays.asList(
+            new Reflector("R", new Permutation(wiring(256, random, true),
+                                               alpha)),
+            new MovingRotor("A", new Permutation(wiring(256, random, false),
+                                                 alpha), notch),
+            new MovingRotor("B", new Permutation(wiring(256, random, false),
+                                                 alpha), notch),
+            new MovingRotor("C", new Permutation(wiring(256, random, false),
+                                                 alpha), notch)));
+        m.insertRotors(new String[] { "R", "A", "B", "C" });
+        return m;
+    }
+
+    /** Return random DATA of LEN bytes. */
+    private static byte[] data(int len) {
+        byte[] result = new byte[len];
+        new Random(61).nextBytes(result);
+        return result;
+    }
+
+    /** Return DATA converted a byte at a time by a new machine(SEED). */
+    private static byte[] expected(byte[] data, long seed) {
+        Machine m = machine(seed);
+        byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i += 1) {
+            result[i] = (byte) m.convert(data[i] & 0xff);
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testChannels() throws IOException {
+        byte[] data = data(200000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ByteProcessor(machine(3)).process(
+            Channels.newChannel(new ByteArrayInputStream(data)),
+            Channels.newChannel(out));
+        assertArrayEquals(expected(data, 3), out.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        byte[] data = data(5000);
+        ByteBuffer cipher = ByteBuffer.allocateDirect(data.length);
+        new ByteProcessor(machine(5)).convert(ByteBuffer.wrap(data), cipher);
+        cipher.flip();
+        ByteBuffer plain = ByteBuffer.allocate(data.length);
+        new ByteProcessor(machine(5)).convert(cipher, plain);
+        assertArrayEquals(data, plain.array());
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        byte[] data = data(100003);
+        File input = File.createTempFile("enigma", ".in");
+        File output = File.createTempFile("enigma", ".out");
+        try {
+            Files.write(input.toPath(), data);
+            Files.write(output.toPath(), new byte[200000]);
+            try (FileChannel in = FileChannel.open(input.toPath());
+                 FileChannel out =
+                 FileChannel.open(output.toPath(), StandardOpenOption.READ,
+                                  StandardOpenOption.WRITE)) {
+                new ByteProcessor(machine(7), 4096).processMapped(in, out);
+            }
+            assertArrayEquals(expected(data, 7),
+                              Files.readAllBytes(output.toPath()));
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+
+    @Test
+    public void testInPlace() throws IOException {
+        byte[] data = data(100003);
+        File file = File.createTempFile("enigma", ".dat");
+        try {
+            Files.write(file.toPath(), data);
+            new ByteProcessor(machine(9), 4096).processFile(
+                file.toPath(),
+                file.getParentFile().toPath().resolve(".")
+                .resolve(file.getName()));
+            assertArrayEquals(expected(data, 9),
+                              Files.readAllBytes(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testAlphabetSize() {
+        Machine m = new Machine(new Alphabet(), 2, 1, Arrays.asList(
+            new Reflector("R", new Permutation("(AB)", new Alphabet())),
+            new MovingRotor("M", new Permutation("", new Alphabet()), "A")));
+        new ByteProcessor(m);
+    }
+
+}
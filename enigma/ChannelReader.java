@@ -0,0 +1,128 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/** A buffered source of characters read from a byte channel.  Bytes are
+ *  taken directly as characters for as long as they are ASCII; the first
+ *  non-ASCII byte switches the rest of the input over to a decoder for
+ *  the given character set.  Memory use is fixed by the buffer size.
+ *  @author Michelle
+ */
+class ChannelReader {
+
+    /** A reader of characters encoded in CHARSET from IN, buffering
+     *  BUFSIZE bytes and characters at a time. */
+    ChannelReader(ReadableByteChannel in, Charset charset, int bufSize) {
+        _in = in;
+        _charset = charset;
+        _bytes = ByteBuffer.allocate(bufSize);
+        _bytes.flip();
+        _chars = new char[bufSize];
+        if (!ChannelWriter.asciiCompatible(charset)) {
+            _decoder = decoder();
+        }
+    }
+
+    /** A reader of characters from IN in the default character set. */
+    ChannelReader(ReadableByteChannel in) {
+        this(in, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /** Return the next character without consuming it, or -1 at the end
+     *  of input. */
+    int peek() throws IOException {
+        if (_pos == _limit && !fill()) {
+            return -1;
+        }
+        return _chars[_pos];
+    }
+
+    /** Return and consume the next character, or return -1 at the end
+     *  of input. */
+    int read() throws IOException {
+        if (_pos == _limit && !fill()) {
+            return -1;
+        }
+        return _chars[_pos++];
+    }
+
+    /** Refill _chars from the channel, returning false if there is
+     *  nothing left to read. */
+    private boolean fill() throws IOException {
+        _pos = _limit = 0;
+        while (true) {
+            if (_decoder == null) {
+                byte[] bytes = _bytes.array();
+                int p = _bytes.position(), end = _bytes.limit();
+                while (p < end && _limit < _chars.length) {
+                    byte b = bytes[p];
+                    if (b < 0) {
+                        _decoder = decoder();
+                        break;
+                    }
+                    _chars[_limit] = (char) b;
+                    _limit += 1;
+                    p += 1;
+                }
+                _bytes.position(p);
+            }
+            if (_decoder != null && !_flushed) {
+                CharBuffer out =
+                    CharBuffer.wrap(_chars, _limit, _chars.length - _limit);
+                _decoder.decode(_bytes, out, _eof);
+                if (_eof) {
+                    _decoder.flush(out);
+                    _flushed = true;
+                }
+                _limit = out.position();
+            }
+            if (_limit > 0) {
+                return true;
+            }
+            if (_eof) {
+                return false;
+            }
+            _bytes.compact();
+            if (_in.read(_bytes) < 0) {
+                _eof = true;
+            }
+            _bytes.flip();
+        }
+    }
+
+    /** Return a decoder for my character set that replaces bad input, as
+     *  Scanner does. */
+    private CharsetDecoder decoder() {
+        return _charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Default size of my buffers. */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /** Source of bytes. */
+    private final ReadableByteChannel _in;
+    /** Character set used once input stops being ASCII. */
+    private final Charset _charset;
+    /** Bytes read but not yet converted, in read mode. */
+    private final ByteBuffer _bytes;
+    /** Converted characters; _chars[_pos .. _limit-1] are unread. */
+    private final char[] _chars;
+    /** Index of the next unread character in _chars. */
+    private int _pos;
+    /** End of the valid characters in _chars. */
+    private int _limit;
+    /** Decoder for non-ASCII input, or null while input is ASCII. */
+    private CharsetDecoder _decoder;
+    /** True once the channel has reported end of input. */
+    private boolean _eof;
+    /** True once _decoder has been flushed at end of input. */
+    private boolean _flushed;
+}
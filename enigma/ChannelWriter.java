@@ -0,0 +1,103 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** A buffered sink of characters written to a byte channel.  ASCII
+ *  characters are stored as single bytes without going through an
+ *  encoder; others are encoded in the given character set.
+ *  @author Michelle
+ */
+class ChannelWriter {
+
+    /** A writer of characters encoded in CHARSET to OUT, buffering up to
+     *  BUFSIZE bytes at a time. */
+    ChannelWriter(WritableByteChannel out, Charset charset, int bufSize) {
+        _out = out;
+        _charset = charset;
+        _bytes = ByteBuffer.allocate(bufSize);
+        _ascii = asciiCompatible(charset);
+    }
+
+    /** A writer of characters to OUT in the default character set. */
+    ChannelWriter(WritableByteChannel out) {
+        this(out, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /** Write the character C. */
+    void write(char c) throws IOException {
+        if (c < ASCII_LIMIT && _ascii && _pending == 0) {
+            if (!_bytes.hasRemaining()) {
+                drain();
+            }
+            _bytes.put((byte) c);
+        } else if (Character.isHighSurrogate(c)) {
+            _pending = c;
+        } else {
+            String s = _pending == 0 ? String.valueOf(c)
+                : new String(new char[] { _pending, c });
+            _pending = 0;
+            for (byte b : s.getBytes(_charset)) {
+                if (!_bytes.hasRemaining()) {
+                    drain();
+                }
+                _bytes.put(b);
+            }
+        }
+    }
+
+    /** Return true iff CHARSET encodes each ASCII character as the
+     *  single byte with the same value. */
+    static boolean asciiCompatible(Charset charset) {
+        return Arrays.equals(ASCII_PROBE.getBytes(charset),
+                             ASCII_PROBE.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Write the system line separator. */
+    void newLine() throws IOException {
+        for (int i = 0; i < LINE_SEPARATOR.length(); i += 1) {
+            write(LINE_SEPARATOR.charAt(i));
+        }
+    }
+
+    /** Write out everything buffered so far. */
+    void flush() throws IOException {
+        drain();
+    }
+
+    /** Empty _bytes into the channel. */
+    private void drain() throws IOException {
+        _bytes.flip();
+        while (_bytes.hasRemaining()) {
+            _out.write(_bytes);
+        }
+        _bytes.clear();
+    }
+
+    /** Default size of my buffer. */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    /** Characters below this are written as single bytes. */
+    private static final char ASCII_LIMIT = 0x80;
+    /** Characters used to test a character set for ASCII
+     *  compatibility. */
+    private static final String ASCII_PROBE =
+        "\t\n\r *()0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+        + "abcdefghijklmnopqrstuvwxyz";
+    /** The line separator written by newLine. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Destination of bytes. */
+    private final WritableByteChannel _out;
+    /** Character set for non-ASCII characters. */
+    private final Charset _charset;
+    /** Bytes not yet written, in write mode. */
+    private final ByteBuffer _bytes;
+    /** True iff ASCII characters may be written as single bytes. */
+    private final boolean _ascii;
+    /** A high surrogate awaiting its partner, or 0. */
+    private char _pending;
+}
@@ -0,0 +1,69 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** A bounded cache of whole-machine substitution tables, keyed by an
+ *  encoding of the rotor offsets for which each table was computed.
+ *  The cache is direct-mapped: each key has exactly one slot, and a
+ *  table computed for a new key simply evicts whatever occupied its slot,
+ *  so memory never exceeds the number of slots times the alphabet size.
+ *  @author Michelle
+ */
+class CompositeCache {
+
+    /** A cache of at most MAXTABLES tables (rounded down to a power of
+     *  two), each of SIZE entries. */
+    CompositeCache(int maxTables, int size) {
+        int slots = Integer.highestOneBit(Math.max(1, maxTables));
+        _size = size;
+        _shift = 64 - Integer.numberOfTrailingZeros(slots);
+        _keys = new long[slots];
+        _tables = new int[slots][];
+        clear();
+    }
+
+    /** Return the number of tables I can hold. */
+    int capacity() {
+        return _keys.length;
+    }
+
+    /** Discard all my tables. */
+    void clear() {
+        Arrays.fill(_keys, -1);
+    }
+
+    /** Return the table cached for KEY (a non-negative value), or null
+     *  if there is none. */
+    int[] get(long key) {
+        int h = slot(key);
+        return _keys[h] == key ? _tables[h] : null;
+    }
+
+    /** Evict the occupant of KEY's slot and return a table of size
+     *  entries for the caller to fill in as the table for KEY. */
+    int[] put(long key) {
+        int h = slot(key);
+        if (_tables[h] == null) {
+            _tables[h] = new int[_size];
+        }
+        _keys[h] = key;
+        return _tables[h];
+    }
+
+    /** Return the slot for KEY. */
+    private int slot(long key) {
+        return _shift == 64 ? 0 : (int) ((key * HASH_MULTIPLIER) >>> _shift);
+    }
+
+    /** Multiplier used to scramble keys into slots. */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /** Number of entries in each table. */
+    private final int _size;
+    /** Shift that reduces a scrambled key to a slot number. */
+    private final int _shift;
+    /** Key held in each slot, or -1 if empty. */
+    private final long[] _keys;
+    /** Table held in each slot, allocated on first use. */
+    private final int[][] _tables;
+}
@@ -0,0 +1,216 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A compiled machine configuration: a binary image of a MachineSpec
+ *  holding the alphabet, each rotor's type, name, notches, and wiring as
+ *  a dense table, so that loading it needs no text parsing.  The image
+ *  (all numbers big-endian) is
+ *  <pre>
+ *      int MAGIC, int VERSION,
+ *      int K, K chars       alphabet, of N characters
+ *      int numRotors, int numPawls, int R
+ *      R times:
+ *          byte type        'M', 'N', or 'R'
+ *          int K, K chars   name
+ *          int K, K chars   notches
+ *          N entries        image of each index under the wiring
+ *  </pre>
+ *  where each wiring entry is a char (unsigned 16-bit number), or an
+ *  int if N exceeds 65536.
+ *  Run as "java enigma.ConfigImage CONFIG IMAGE" to compile the text
+ *  configuration file CONFIG.  Main accepts either form.
+ *  @author Michelle
+ */
+class ConfigImage {
+
+    /** Compile the configuration file ARGS[0] into the image ARGS[1]. */
+    public static void main(String... args) {
+        try {
+            if (args.length != 2) {
+                throw error("Usage: java enigma.ConfigImage CONFIG IMAGE");
+            }
+            write(Main.readConfig(Main.getInput(args[0])), args[1]);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the image of SPEC. */
+    static ByteBuffer image(MachineSpec spec) {
+        int n = spec.alphabet().size();
+        int width = entryWidth(n);
+        List<Rotor> rotors = new ArrayList<Rotor>();
+        int length = 6 * 4 + 2 * spec.alphabet().chars().length();
+        for (String name : spec.rotorNames()) {
+            Rotor rotor = spec.newRotor(name);
+            rotors.add(rotor);
+            length += 1 + 4 + 2 * name.length() + 4
+                + 2 * notches(rotor).length() + width * n;
+        }
+        ByteBuffer image = ByteBuffer.allocate(length);
+        image.putInt(MAGIC).putInt(VERSION);
+        putString(image, spec.alphabet().chars());
+        image.putInt(spec.numRotors()).putInt(spec.numPawls())
+            .putInt(rotors.size());
+        for (Rotor rotor : rotors) {
+            image.put((byte) (rotor.reflecting() ? 'R'
+                              : rotor.rotates() ? 'M' : 'N'));
+            putString(image, rotor.name());
+            putString(image, notches(rotor));
+            Permutation perm = rotor.permutation();
+            for (int p = 0; p < n; p += 1) {
+                if (width == 2) {
+                    image.putChar((char) perm.permute(p));
+                } else {
+                    image.putInt(perm.permute(p));
+                }
+            }
+        }
+        image.flip();
+        return image;
+    }
+
+    /** Write the image of SPEC to the file named NAME. */
+    static void write(MachineSpec spec, String name) {
+        ByteBuffer image = image(spec);
+        try (FileChannel out =
+             FileChannel.open(Paths.get(name), StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (image.hasRemaining()) {
+                out.write(image);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return true iff the file named NAME exists and starts with the
+     *  magic number of an image. */
+    static boolean isImage(String name) {
+        try (FileChannel in = FileChannel.open(Paths.get(name))) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            while (head.hasRemaining() && in.read(head) >= 0) {
+                continue;
+            }
+            return !head.hasRemaining() && head.getInt(0) == MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return the spec whose image is the file named NAME, which is
+     *  mapped into memory rather than read. */
+    static MachineSpec read(String name) {
+        try (FileChannel in = FileChannel.open(Paths.get(name))) {
+            MappedByteBuffer image =
+                in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            return read(image);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return the spec whose image is the rest of IMAGE. */
+    static MachineSpec read(ByteBuffer image) {
+        try {
+            if (image.getInt() != MAGIC) {
+                throw error("not a configuration image");
+            }
+            if (image.getInt() != VERSION) {
+                throw error("unsupported configuration image version");
+            }
+            Alphabet alphabet = new Alphabet(getString(image));
+            int n = alphabet.size();
+            int width = entryWidth(n);
+            int numRotors = image.getInt();
+            int numPawls = image.getInt();
+            int count = image.getInt();
+            List<Rotor> rotors = new ArrayList<Rotor>();
+            int[] wiring = new int[n];
+            char[] chars = new char[width == 2 ? n : 0];
+            for (int r = 0; r < count; r += 1) {
+                char type = (char) image.get();
+                String rotorName = getString(image);
+                String notches = getString(image);
+                if (width == 2) {
+                    image.asCharBuffer().get(chars);
+                    for (int p = 0; p < n; p += 1) {
+                        wiring[p] = chars[p];
+                    }
+                } else {
+                    image.asIntBuffer().get(wiring);
+                }
+                image.position(image.position() + width * n);
+                Permutation perm = new Permutation(wiring, alphabet);
+                if (type == 'M') {
+                    rotors.add(new MovingRotor(rotorName, perm, notches));
+                } else if (type == 'N') {
+                    rotors.add(new FixedRotor(rotorName, perm));
+                } else if (type == 'R') {
+                    rotors.add(new Reflector(rotorName, perm));
+                } else {
+                    throw error("bad rotor description");
+                }
+            }
+            if (image.hasRemaining()) {
+                throw error("configuration image has trailing data");
+            }
+            return new MachineSpec(alphabet, numRotors, numPawls, rotors);
+        } catch (BufferUnderflowException excp) {
+            throw error("configuration image truncated");
+        }
+    }
+
+    /** Return the number of bytes in each wiring entry for an alphabet
+     *  of N characters. */
+    private static int entryWidth(int n) {
+        return n <= 1 << 16 ? 2 : 4;
+    }
+
+    /** Return the notches of ROTOR, or "" if it has none. */
+    private static String notches(Rotor rotor) {
+        return rotor.notches() == null ? "" : rotor.notches();
+    }
+
+    /** Append S, preceded by its length, to IMAGE. */
+    private static void putString(ByteBuffer image, String s) {
+        image.putInt(s.length());
+        for (int i = 0; i < s.length(); i += 1) {
+            image.putChar(s.charAt(i));
+        }
+    }
+
+    /** Return the string, preceded by its length, at the start of the
+     *  rest of IMAGE, and skip it. */
+    private static String getString(ByteBuffer image) {
+        int length = image.getInt();
+        if (length < 0 || length > image.remaining() / 2) {
+            throw new BufferUnderflowException();
+        }
+        char[] chars = new char[length];
+        image.asCharBuffer().get(chars);
+        image.position(image.position() + 2 * length);
+        return new String(chars);
+    }
+
+    /** First four bytes of an image: a DEL character, which cannot
+     *  start a text configuration, then "ENG" in ASCII. */
+    static final int MAGIC = 0x7F454E47;
+
+    /** Version of the image format. */
+    static final int VERSION = 1;
+}
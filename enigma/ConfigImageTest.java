@@ -0,0 +1,121 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Scanner;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ConfigImage class.
+ *  @author Michelle
+ */
+public class ConfigImageTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration with rotors of every kind. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ 5 3\n"
+        + " I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " VI MZM (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "     (RX) (SZ) (TV)\n";
+
+    /** A message long enough to turn over every rotor. */
+    private static final String MESSAGE =
+        new String(new char[800]).replace("\0", "FROMHISSHOULDER");
+
+    /** Return the result of converting MESSAGE with a machine for SPEC
+     *  set up by SETTINGS. */
+    private String convert(MachineSpec spec, String settings) {
+        Machine m = new Machine(spec);
+        Main.setUp(m, settings);
+        return m.convert(MESSAGE);
+    }
+
+    /** Check that the specs EXPECTED and ACTUAL describe the same
+     *  machines. */
+    private void checkSame(MachineSpec expected, MachineSpec actual) {
+        assertEquals(expected.numRotors(), actual.numRotors());
+        assertEquals(expected.numPawls(), actual.numPawls());
+        assertEquals(expected.alphabet().size(), actual.alphabet().size());
+        assertEquals(expected.rotorNames().toString(),
+                     actual.rotorNames().toString());
+        for (String name : expected.rotorNames()) {
+            Rotor r0 = expected.newRotor(name), r1 = actual.newRotor(name);
+            assertEquals(name, r0.getClass(), r1.getClass());
+            if (r0.rotates()) {
+                assertEquals(name, r0.notches(), r1.notches());
+            }
+        }
+        for (String settings : new String[] {
+                "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+                "* B Beta VI IV III ZZZZ AXYZ (AB)",
+            }) {
+            assertEquals(settings, convert(expected, settings),
+                         convert(actual, settings));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() {
+        MachineSpec spec = Main.readConfig(new Scanner(CONFIG));
+        checkSame(spec, ConfigImage.read(ConfigImage.image(spec)));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        MachineSpec spec = Main.readConfig(new Scanner(CONFIG));
+        File text = File.createTempFile("enigma", ".conf");
+        File image = File.createTempFile("enigma", ".img");
+        try {
+            Files.write(text.toPath(), CONFIG.getBytes("US-ASCII"));
+            ConfigImage.write(spec, image.getPath());
+            assertTrue(ConfigImage.isImage(image.getPath()));
+            assertFalse(ConfigImage.isImage(text.getPath()));
+            checkSame(spec, Main.readConfig(image.getPath()));
+            checkSame(spec, Main.readConfig(text.getPath()));
+        } finally {
+            text.delete();
+            image.delete();
+        }
+    }
+
+    @Test
+    public void testTruncated() {
+        ByteBuffer image =
+            ConfigImage.image(Main.readConfig(new Scanner(CONFIG)));
+        for (int n = 0; n < image.limit(); n += 7) {
+            ByteBuffer part = image.duplicate();
+            part.limit(n);
+            try {
+                ConfigImage.read(part);
+                fail("read image truncated to " + n + " bytes");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadWiring() {
+        ByteBuffer image =
+            ConfigImage.image(Main.readConfig(new Scanner(CONFIG)));
+        image.putChar(image.limit() - 2, (char) 0);
+        ConfigImage.read(image);
+    }
+
+}
@@ -11,4 +11,9 @@ class FixedRotor extends Rotor {
         super(name, perm);
     }
 
+    @Override
+    Rotor copy() {
+        return copyState(new FixedRotor(name(), permutation()));
+    }
+
 }
@@ -0,0 +1,143 @@
+package enigma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** A least-recently-used cache of machine setups, keyed by settings line,
+ *  for input that repeats a few settings lines many times.  For each
+ *  settings line it keeps a machine set up by Main.setUp and that
+ *  machine's keystream (see Machine.keystream) for its first few
+ *  characters.  Setting up a machine with a cached line copies the
+ *  rotors and has the machine replay the keystream, so there is no
+ *  parsing, no new plugboard, and no stepping until the keystream runs
+ *  out.  Settings lines that differ only in white space are the same
+ *  line.  The memory bound counts only the keystreams; the least
+ *  recently used entries are dropped to stay within it.  One cache may
+ *  be used by several threads at once.
+ *  @author Michelle
+ */
+class KeystreamCache {
+
+    /** A cache for machines described by SPEC that keeps keystreams of
+     *  LENGTH > 0 characters, using at most MAXBYTES bytes for them. */
+    KeystreamCache(MachineSpec spec, int length, long maxBytes) {
+        if (length <= 0) {
+            throw error("keystream length must be positive");
+        }
+        _spec = spec;
+        _length = length;
+        _maxBytes = maxBytes;
+    }
+
+    /** Set M, which must be described by my spec, according to
+     *  SETTINGS, with the same effect as Main.setUp(M, SETTINGS).  A
+     *  machine that is being traced is always set up by Main.setUp, and
+     *  does not count as a hit or a miss. */
+    void setUp(Machine m, String settings) {
+        if (m.spec() != _spec) {
+            throw error("machine has a different configuration");
+        }
+        if (m.trace() != null) {
+            Main.setUp(m, settings);
+            return;
+        }
+        String key = normalize(settings);
+        Entry entry;
+        synchronized (this) {
+            entry = _entries.get(key);
+            if (entry != null) {
+                _hits += 1;
+            } else {
+                _misses += 1;
+            }
+        }
+        if (entry != null) {
+            m.replay(entry._start, entry._keystream, _length);
+            return;
+        }
+        Main.setUp(m, settings);
+        long bytes = (long) _length * _spec.alphabet().size() * Integer.BYTES;
+        if (bytes <= _maxBytes) {
+            add(key, new Entry(m.copy(), m.keystream(_length)), bytes);
+        }
+    }
+
+    /** Return the number of setUps that found their settings cached. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of setUps that did not. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of settings lines cached. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the number of bytes taken by the cached keystreams. */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Cache ENTRY, whose keystream takes BYTES bytes, for KEY, dropping
+     *  least recently used entries as needed to stay within the memory
+     *  bound.  Another thread may have cached KEY in the meantime, in
+     *  which case its entry is kept. */
+    private synchronized void add(String key, Entry entry, long bytes) {
+        if (_entries.containsKey(key)) {
+            return;
+        }
+        Iterator<Entry> eldest = _entries.values().iterator();
+        while (_bytes + bytes > _maxBytes) {
+            eldest.next();
+            eldest.remove();
+            _bytes -= bytes;
+        }
+        _entries.put(key, entry);
+        _bytes += bytes;
+    }
+
+    /** Return SETTINGS with leading and trailing white space removed and
+     *  other runs of white space replaced by single blanks. */
+    static String normalize(String settings) {
+        return String.join(" ", settings.trim().split("\\s+"));
+    }
+
+    /** A cached setup. */
+    private static class Entry {
+        /** An entry for machines set up as START, whose keystream is
+         *  KEYSTREAM. */
+        Entry(Machine start, int[] keystream) {
+            _start = start;
+            _keystream = keystream;
+        }
+
+        /** A machine as set up, never itself used to convert. */
+        private final Machine _start;
+        /** The keystream of _start. */
+        private final int[] _keystream;
+    }
+
+    /** Description of my machines. */
+    private final MachineSpec _spec;
+    /** Number of characters in each keystream. */
+    private final int _length;
+    /** Bound on the bytes taken by all keystreams. */
+    private final long _maxBytes;
+    /** Cached setups by normalized settings line, least recently used
+     *  first. */
+    private final Map<String, Entry> _entries =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    /** Bytes taken by the keystreams of _entries. */
+    private long _bytes;
+    /** Number of setUps that found their settings cached. */
+    private long _hits;
+    /** Number of setUps that did not. */
+    private long _misses;
+}
@@ -0,0 +1,125 @@
+package enigma;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the KeystreamCache class and the
+ *  keystream replay of Machine.
+ *  @author Michelle
+ */
+public class KeystreamCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval rotors B, Beta, III, IV, and I in five slots. */
+    private static final String[] NAMES = { "B", "Beta", "III", "IV", "I" };
+
+    private static final MachineSpec SPEC = TestUtils.navalSpec(NAMES);
+
+    private static final String SETTINGS1 =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+    private static final String SETTINGS2 = "* B Beta I III IV ADUQ BCDE";
+    private static final String SETTINGS3 = "* B Beta IV I III QEVJ";
+
+    /** Return a random message of LEN letters. */
+    private static String message(int len) {
+        Random random = new Random(len);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < len; i += 1) {
+            result.append((char) ('A' + random.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    /** Return a new machine set up by Main.setUp with SETTINGS. */
+    private static Machine machine(String settings) {
+        Machine m = new Machine(SPEC);
+        Main.setUp(m, settings);
+        return m;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testReplay() {
+        KeystreamCache cache = new KeystreamCache(SPEC, 100, 1 << 20);
+        for (String settings : new String[] { SETTINGS1, SETTINGS2 }) {
+            for (int len : new int[] { 0, 50, 100, 101, 3000 }) {
+                Machine m = new Machine(SPEC);
+                cache.setUp(m, settings);
+                String msg = message(len);
+                assertEquals(machine(settings).convert(msg), m.convert(msg));
+            }
+        }
+        assertEquals(2, cache.misses());
+        assertEquals(8, cache.hits());
+    }
+
+    @Test
+    public void testSyncOnDemand() {
+        KeystreamCache cache = new KeystreamCache(SPEC, 1000, 1 << 20);
+        Machine m = new Machine(SPEC);
+        cache.setUp(m, SETTINGS1);
+        cache.setUp(m, SETTINGS1);
+        Machine expected = machine(SETTINGS1);
+        String msg = message(700);
+        assertEquals(expected.convert(msg), m.convert(msg));
+        Machine copy = m.copy();
+        for (int i = 1; i < 5; i += 1) {
+            assertEquals(expected.getRotor(i).setting(),
+                         m.getRotor(i).setting());
+        }
+        assertEquals(expected.copy().convert(msg), copy.convert(msg));
+        m.seek(20);
+        expected.seek(20);
+        assertEquals(expected.convert(msg), m.convert(msg));
+        cache.setUp(m, SETTINGS1);
+        assertEquals(machine(SETTINGS1).convert(msg), m.convert(msg));
+    }
+
+    @Test
+    public void testNormalize() {
+        KeystreamCache cache = new KeystreamCache(SPEC, 10, 1 << 20);
+        cache.setUp(new Machine(SPEC), SETTINGS2);
+        cache.setUp(new Machine(SPEC), "  *  B Beta\tI III  IV ADUQ BCDE ");
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMemoryBound() {
+        int bytes = 10 * 26 * Integer.BYTES;
+        KeystreamCache cache = new KeystreamCache(SPEC, 10, 2 * bytes);
+        cache.setUp(new Machine(SPEC), SETTINGS1);
+        cache.setUp(new Machine(SPEC), SETTINGS2);
+        cache.setUp(new Machine(SPEC), SETTINGS1);
+        cache.setUp(new Machine(SPEC), SETTINGS3);
+        assertEquals(2, cache.size());
+        assertEquals(2 * bytes, cache.bytes());
+        cache.setUp(new Machine(SPEC), SETTINGS1);
+        cache.setUp(new Machine(SPEC), SETTINGS2);
+        assertEquals(2, cache.hits());
+        assertEquals(4, cache.misses());
+
+        KeystreamCache tiny = new KeystreamCache(SPEC, 10, bytes - 1);
+        Machine m = new Machine(SPEC);
+        tiny.setUp(m, SETTINGS1);
+        assertEquals(0, tiny.size());
+        assertEquals(machine(SETTINGS1).convert("HELLO"), m.convert("HELLO"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testOtherSpec() {
+        KeystreamCache cache = new KeystreamCache(SPEC, 10, 1 << 20);
+        cache.setUp(new Machine(TestUtils.navalSpec(NAMES)), SETTINGS1);
+    }
+
+}
@@ -0,0 +1,239 @@
+package enigma;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** An engine that runs a number of independent machine states, its
+ *  lanes, in lockstep: each step advances every lane and converts one
+ *  character in each.  Lanes may hold different rotors, settings, and
+ *  plugboards, so many short messages, each with its own settings, are
+ *  converted together.  The state is kept as structures of arrays (one
+ *  array per rotor slot, indexed by lane) over the wiring tables of all
+ *  of a spec's rotors, so that a step can work on many lanes at once.
+ *  This class steps the lanes one at a time; create() returns a
+ *  subclass that uses vector instructions when it is available.
+ *  @author Michelle
+ */
+class Lockstep {
+
+    /** An engine with LANES lanes for machines described by SPEC.  Each
+     *  lane starts out holding the first of SPEC's rotors in every slot,
+     *  at setting 0, with no plugboard, until loaded. */
+    Lockstep(MachineSpec spec, int lanes) {
+        if (lanes < 1) {
+            throw error("need at least one lane");
+        }
+        _spec = spec;
+        _lanes = lanes;
+        _size = spec.alphabet().size();
+        _slots = spec.numRotors();
+        _firstMoving = _slots - spec.numPawls();
+        int count = spec.rotorNames().size();
+        _forward = new int[count * _size];
+        _inverse = new int[count * _size];
+        _notches = new int[count * _size];
+        int base = 0;
+        for (String name : spec.rotorNames()) {
+            Rotor rotor = spec.newRotor(name);
+            Permutation perm = rotor.permutation();
+            for (int c = 0; c < _size; c += 1) {
+                _forward[base + c] = perm.permute(c);
+                _inverse[base + c] = perm.invert(c);
+                if (rotor.rotates() && rotor.atNotch(c)) {
+                    _notches[base + c] = 1;
+                }
+            }
+            _bases.put(name, base);
+            base += _size;
+        }
+        _base = new int[_slots][lanes];
+        _setting = new int[_slots][lanes];
+        _offset = new int[_slots][lanes];
+        _plug = new int[lanes * _size];
+        for (int i = 0; i < _plug.length; i += 1) {
+            _plug[i] = i % _size;
+        }
+        _advance = new boolean[_slots];
+    }
+
+    /** Return an engine like new Lockstep(SPEC, LANES), using the Vector
+     *  API if its module (jdk.incubator.vector) and the compiled
+     *  VectorLockstep are available, and otherwise this class. */
+    static Lockstep create(MachineSpec spec, int lanes) {
+        try {
+            return (Lockstep) Class.forName(VECTOR_ENGINE)
+                .getDeclaredConstructor(MachineSpec.class, int.class)
+                .newInstance(spec, lanes);
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return new Lockstep(spec, lanes);
+        }
+    }
+
+    /** Return my number of lanes. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Set lane LANE to the rotors, settings, and plugboard of M, which
+     *  must have been made from my spec and have its rotors inserted.  M
+     *  is not changed. */
+    void load(int lane, Machine m) {
+        if (m.spec() != _spec) {
+            throw error("machine has a different configuration");
+        }
+        if (m.getRotor(0) == null) {
+            throw error("machine has no rotors inserted");
+        }
+        for (int i = 0; i < _slots; i += 1) {
+            Rotor rotor = m.getRotor(i);
+            _base[i][lane] = _bases.get(rotor.name());
+            _setting[i][lane] = rotor.setting();
+            _offset[i][lane] = rotor.offset();
+        }
+        Permutation plugboard = m.plugboard();
+        for (int c = 0; c < _size; c += 1) {
+            _plug[lane * _size + c] = plugboard.permute(c);
+        }
+    }
+
+    /** Run STEPS steps, converting IN into OUT, where the character (as
+     *  an alphabet index) of lane L at step T is element T * lanes() + L
+     *  of each. */
+    void convert(int[] in, int[] out, int steps) {
+        for (int t = 0, k = 0; t < steps; t += 1) {
+            for (int lane = 0; lane < _lanes; lane += 1, k += 1) {
+                out[k] = convert(lane, in[k]);
+            }
+        }
+    }
+
+    /** Return the results of converting each of MESSAGES, which contain
+     *  only characters of my alphabet, with the corresponding machine of
+     *  MACHINES, as MACHINES[K].convert(MESSAGES[K]) would, but without
+     *  changing MACHINES.  Messages are converted lanes() at a time, each
+     *  batch taking as many steps as its longest message. */
+    String[] convert(Machine[] machines, String[] messages) {
+        Alphabet alpha = _spec.alphabet();
+        String[] result = new String[messages.length];
+        for (int first = 0; first < messages.length; first += _lanes) {
+            int count = Math.min(_lanes, messages.length - first);
+            int[][] text = new int[count][];
+            int steps = 0;
+            for (int k = 0; k < count; k += 1) {
+                load(k, machines[first + k]);
+                text[k] = messages[first + k].codePoints().toArray();
+                steps = Math.max(steps, text[k].length);
+            }
+            int[] in = new int[steps * _lanes];
+            int[] out = new int[steps * _lanes];
+            for (int k = 0; k < count; k += 1) {
+                for (int t = 0; t < text[k].length; t += 1) {
+                    int c = alpha.toInt(text[k][t]);
+                    if (c < 0) {
+                        throw error("character '%c' not in alphabet",
+                                    text[k][t]);
+                    }
+                    in[t * _lanes + k] = c;
+                }
+            }
+            convert(in, out, steps);
+            for (int k = 0; k < count; k += 1) {
+                StringBuilder converted = new StringBuilder();
+                for (int t = 0; t < text[k].length; t += 1) {
+                    converted.appendCodePoint(
+                        alpha.toCodePoint(out[t * _lanes + k]));
+                }
+                result[first + k] = converted.toString();
+            }
+        }
+        return result;
+    }
+
+    /** Advance lane LANE as Machine.convert does, and return the
+     *  conversion of C in it. */
+    int convert(int lane, int c) {
+        advance(lane);
+        int p = _plug[lane * _size + c];
+        for (int i = _slots - 1; i >= 0; i -= 1) {
+            p = through(_forward, _base[i][lane], _offset[i][lane], p);
+        }
+        for (int i = 1; i < _slots; i += 1) {
+            p = through(_inverse, _base[i][lane], _offset[i][lane], p);
+        }
+        return _plug[lane * _size + p];
+    }
+
+    /** Return the image of P under the wiring at BASE in TABLE, at
+     *  offset OFFSET. */
+    private int through(int[] table, int base, int offset, int p) {
+        int q = p + offset;
+        if (q >= _size) {
+            q -= _size;
+        }
+        int r = table[base + q] - offset;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** Advance the moving rotors of lane LANE. */
+    private void advance(int lane) {
+        int last = _slots - 1;
+        if (_firstMoving > last) {
+            return;
+        }
+        _advance[last] = true;
+        for (int i = last; i > _firstMoving; i -= 1) {
+            if (_notches[_base[i][lane] + _setting[i][lane]] != 0) {
+                _advance[i] = _advance[i - 1] = true;
+            }
+        }
+        for (int i = _firstMoving; i <= last; i += 1) {
+            if (_advance[i]) {
+                _advance[i] = false;
+                _setting[i][lane] = next(_setting[i][lane]);
+                _offset[i][lane] = next(_offset[i][lane]);
+            }
+        }
+    }
+
+    /** Return the position after P. */
+    private int next(int p) {
+        return p + 1 == _size ? 0 : p + 1;
+    }
+
+    /** Name of the class of vector engines. */
+    private static final String VECTOR_ENGINE = "enigma.VectorLockstep";
+
+    /** The spec of my machines. */
+    private final MachineSpec _spec;
+    /** Number of lanes. */
+    private final int _lanes;
+    /** Offset in _forward, _inverse, and _notches of each rotor's
+     *  entries, by name. */
+    private final Map<String, Integer> _bases = new HashMap<>();
+    /** Flags for the rotors advanced by a step. */
+    private final boolean[] _advance;
+
+    /** Alphabet size. */
+    final int _size;
+    /** Number of rotor slots. */
+    final int _slots;
+    /** Slot of the leftmost moving rotor. */
+    final int _firstMoving;
+    /** The wiring of every rotor, _size entries each. */
+    final int[] _forward;
+    /** The inverse wiring of every rotor. */
+    final int[] _inverse;
+    /** 1 where a rotor's setting is at a notch, else 0. */
+    final int[] _notches;
+    /** Offset in the tables of the rotor in each slot, by slot and
+     *  lane. */
+    final int[][] _base;
+    /** Setting of each rotor, by slot and lane. */
+    final int[][] _setting;
+    /** Setting less ring setting, modulo _size, by slot and lane. */
+    final int[][] _offset;
+    /** The plugboard of each lane, _size entries each. */
+    final int[] _plug;
+}
@@ -0,0 +1,124 @@
+package enigma;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.Scanner;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Lockstep class.  When run with
+ *  the vector directory on the class path (and jdk.incubator.vector
+ *  added), they test VectorLockstep as well.
+ *  @author Michelle
+ */
+public class LockstepTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration whose rotors have one or two notches. */
+    private static final MachineSpec SPEC = Main.readConfig(new Scanner(
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ 5 3\n"
+        + " I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " VI MZM (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " Gamma N (AFNIRLBSQWVXGUZDKMTPCOYJHE)\n"
+        + " B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "     (RX) (SZ) (TV)\n"
+        + " C R (AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) (LM) (PW)\n"
+        + "     (QZ) (SX) (UY)\n"));
+
+    /** Names of the moving rotors of SPEC. */
+    private static final String[] MOVING = { "I", "II", "III", "IV", "VI" };
+
+    /** Return a machine for SPEC with random rotors, settings, ring
+     *  settings, and plugboard chosen by RANDOM. */
+    private static Machine machine(Random random) {
+        String letters = TestUtils.UPPER_STRING;
+        StringBuilder settings = new StringBuilder("* ");
+        settings.append(random.nextBoolean() ? "B " : "C ");
+        settings.append(random.nextBoolean() ? "Beta " : "Gamma ");
+        int first = random.nextInt(MOVING.length);
+        for (int i = 0; i < 3; i += 1) {
+            settings.append(MOVING[(first + 2 * i) % MOVING.length])
+                .append(' ');
+        }
+        for (int i = 0; i < 4; i += 1) {
+            settings.append(letters.charAt(random.nextInt(26)));
+        }
+        settings.append(' ');
+        for (int i = 0; i < 4; i += 1) {
+            settings.append(letters.charAt(random.nextInt(26)));
+        }
+        for (int i = 0; i < 2 * random.nextInt(5); i += 2) {
+            settings.append(" (").append(letters.charAt(i))
+                .append(letters.charAt(25 - i)).append(')');
+        }
+        Machine m = new Machine(SPEC);
+        Main.setUp(m, settings.toString());
+        return m;
+    }
+
+    /** Check that converting COUNT random messages with random machines
+     *  on ENGINE gives the same results as the machines themselves. */
+    private static void check(Lockstep engine, int count) {
+        Random random = new Random(count);
+        Machine[] machines = new Machine[count];
+        String[] messages = new String[count];
+        for (int k = 0; k < count; k += 1) {
+            machines[k] = machine(random);
+            StringBuilder msg = new StringBuilder();
+            for (int n = random.nextInt(1500); n > 0; n -= 1) {
+                msg.append((char) ('A' + random.nextInt(26)));
+            }
+            messages[k] = msg.toString();
+        }
+        String[] results = engine.convert(machines, messages);
+        for (int k = 0; k < count; k += 1) {
+            assertEquals("message " + k, machines[k].convert(messages[k]),
+                         results[k]);
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testScalar() {
+        check(new Lockstep(SPEC, 1), 3);
+        check(new Lockstep(SPEC, 7), 30);
+    }
+
+    @Test
+    public void testCreate() {
+        check(Lockstep.create(SPEC, 16), 40);
+        check(Lockstep.create(SPEC, 19), 19);
+        check(Lockstep.create(SPEC, 3), 2);
+    }
+
+    @Test
+    public void testLoadLeavesMachine() {
+        Machine m = machine(new Random(5));
+        Machine copy = m.copy();
+        Lockstep engine = new Lockstep(SPEC, 2);
+        engine.load(1, m);
+        engine.convert(new int[40], new int[40], 20);
+        assertEquals(copy.convert("HELLOWORLD"), m.convert("HELLOWORLD"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testOtherSpec() {
+        Machine m = machine(new Random(5));
+        MachineSpec other = new MachineSpec(SPEC.alphabet(), 5, 3,
+                                            Collections.emptyList());
+        new Lockstep(other, 2).load(0, m);
+    }
+
+}
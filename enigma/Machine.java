@@ -1,8 +1,16 @@
 package enigma;
 
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.EnigmaException.*;
 
 /** Class that represents a complete enigma machine.
  *  @author Michelle
@@ -14,18 +22,94 @@ class Machine {
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
-        _alphabet = alpha;
-        _numRotors = numRotors;
-        _pawls = pawls;
-        _allRotorsH = new HashMap<String, Rotor>();
-        movingRotors = new Rotor[pawls];
-        Iterator<Rotor> a = allRotors.iterator();
-        for (int i = 0; i < allRotors.size(); i++) {
-            Rotor b = a.next();
-            _allRotorsH.put(b.name(), b);
+        this(new MachineSpec(alpha, numRotors, pawls, allRotors));
+    }
+
+    /** A new Enigma machine as described by SPEC, with no rotors
+     *  inserted.  Any number of machines may share SPEC, and each may be
+     *  used by a different thread. */
+    Machine(MachineSpec spec) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _numRotors = spec.numRotors();
+        _pawls = spec.numPawls();
+        movingRotors = new Rotor[_pawls];
+    }
+
+    /** Return a new machine with my rotors, settings, and plugboard whose
+     *  rotors move independently of mine. */
+    Machine copy() {
+        sync();
+        Machine result = new Machine(_spec);
+        result.copyState(this);
+        return result;
+    }
+
+    /** Set my rotors, settings, and plugboard to copies of those of
+     *  FROM, which has my spec. */
+    private void copyState(Machine from) {
+        _plugboard = from._plugboard;
+        rotorsInUse = null;
+        if (from.rotorsInUse != null) {
+            rotorsInUse = new Rotor[from.rotorsInUse.length];
+            int counter = 0;
+            for (int i = 0; i < rotorsInUse.length; i += 1) {
+                rotorsInUse[i] = from.rotorsInUse[i].copy();
+                if (rotorsInUse[i].rotates()) {
+                    movingRotors[counter] = rotorsInUse[i];
+                    counter += 1;
+                }
+            }
         }
     }
 
+    /** Set my rotors, settings, and plugboard to copies of those of
+     *  START, which has my spec and its rotors inserted, and convert my
+     *  next LENGTH characters with the substitutions in KEYSTREAM, which
+     *  must be START.keystream(LENGTH), instead of with my rotors.  My
+     *  rotors are stepped to catch up (by seek) only when next needed. */
+    void replay(Machine start, int[] keystream, int length) {
+        if (start.spec() != _spec) {
+            throw error("machine has a different configuration");
+        }
+        copyState(start);
+        if (_composites != null) {
+            _composites.clear();
+        }
+        _keystream = keystream;
+        _keystreamLength = length;
+        _replayed = 0;
+    }
+
+    /** Return the substitutions performed by the whole machine (as for
+     *  the composite cache) for the next LENGTH characters it would
+     *  convert, LENGTH tables of alphabet size entries each, one after
+     *  the other.  I am not changed. */
+    int[] keystream(int length) {
+        Machine m = copy();
+        int size = _alphabet.size();
+        int[] result = new int[length * size];
+        for (int t = 0; t < length; t += 1) {
+            m.advanceRotors();
+            m.fillComposite(result, t * size);
+        }
+        return result;
+    }
+
+    /** Bring my rotors up to date with the characters converted from a
+     *  keystream (see replay), and stop using it. */
+    private void sync() {
+        if (_keystream != null) {
+            _keystream = null;
+            seek(_replayed);
+        }
+    }
+
+    /** Return the description of the machine I am. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
     /** Return the number of rotor slots I have. */
     int numRotors() {
         return _numRotors;
@@ -40,6 +124,7 @@ class Machine {
      *  #(numRotors()-1) is the fast Rotor.  Modifying this Rotor has
      *  undefined results. */
     Rotor getRotor(int k) {
+        sync();
         return rotorsInUse[k];
     }
 
@@ -47,95 +132,280 @@ class Machine {
         return _alphabet;
     }
 
-    /** Set my rotor slots to the rotors named ROTORS from my set of
-     *  available rotors (ROTORS[0] names the reflector).
+    /** Set my rotor slots to new rotors like those named ROTORS from my
+     *  set of available rotors (ROTORS[0] names the reflector).  The rotors
+     *  are my own, and are not shared with other machines.
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
-        rotorsInUse = new Rotor[rotors.length];
-        int counter = 0;
-        if (!(_allRotorsH.get(rotors[0]).reflecting())) {
-            throw new EnigmaException("Reflector is not first");
+        _keystream = null;
+        if (_composites != null) {
+            _composites.clear();
         }
+        Rotor[] inUse = new Rotor[rotors.length];
+        Rotor[] moving = new Rotor[_pawls];
+        int counter = 0;
         for (int i = 0; i < rotors.length; i++) {
-            if (!(_allRotorsH.containsKey(rotors[i]))) {
-                throw new EnigmaException("Rotor not in config file");
+            for (int j = 0; j < i; j++) {
+                if (rotors[i].equals(rotors[j])) {
+                    throw error("rotor %s used twice", rotors[i]);
+                }
+            }
+            inUse[i] = _spec.newRotor(rotors[i]);
+            if (inUse[i].reflecting() != (i == 0)) {
+                throw new EnigmaException("Reflector is not first");
             }
-            rotorsInUse[i] = _allRotorsH.get(rotors[i]);
-            if (rotorsInUse[i].rotates()) {
+            if (inUse[i].rotates()) {
                 if (counter == _pawls) {
                     throw new EnigmaException("wrong number of moving rotors");
                 }
-                movingRotors[counter] = _allRotorsH.get(rotors[i]);
+                moving[counter] = inUse[i];
                 counter += 1;
             }
         }
         if (counter != _pawls) {
             throw new EnigmaException("Wrong number of moving rotors");
         }
+        rotorsInUse = inUse;
+        movingRotors = moving;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
+        _keystream = null;
         int c = 0;
         for (int i = 1; i < rotorsInUse.length; i++) {
-            rotorsInUse[i].set(setting.charAt(c));
-            c += 1;
+            int ch = setting.codePointAt(c);
+            rotorsInUse[i].set(_alphabet.toInt(ch));
+            c += Character.charCount(ch);
         }
     }
 
     /** Return the current plugboard's permutation. */
     Permutation plugboard() {
-        if (_plugboard != null) {
-            return _plugboard;
+        if (_plugboard == null) {
+            _plugboard = new Permutation("", alphabet());
         }
-        return new Permutation("", alphabet());
+        return _plugboard;
     }
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        sync();
         _plugboard = plugboard;
+        if (_composites != null) {
+            _composites.clear();
+        }
+    }
+
+    /** Cache the substitution performed by the whole machine for up to
+     *  MAXTABLES distinct rotor positions, so that converting a character
+     *  at a position already seen costs a single table lookup.  Each table
+     *  takes one int per alphabet character.  MAXTABLES <= 0 turns caching
+     *  off, as does a machine with too many positions to number in a long.
+     */
+    void cacheComposites(int maxTables) {
+        _composites = null;
+        if (maxTables <= 0) {
+            return;
+        }
+        try {
+            long states = 1;
+            for (int i = 1; i < _numRotors; i += 1) {
+                states = Math.multiplyExact(states, _alphabet.size());
+            }
+        } catch (ArithmeticException excp) {
+            return;
+        }
+        _composites = new CompositeCache(maxTables, _alphabet.size());
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        advanceRotors();
-        if (Main.verbose()) {
-            System.err.printf("[");
-            for (int r = 1; r < numRotors(); r += 1) {
-                System.err.printf("%c",
-                        alphabet().toChar(getRotor(r).setting()));
+        _converted += 1;
+        if (_keystream != null) {
+            if (_replayed < _keystreamLength) {
+                _replayed += 1;
+                return _keystream[(_replayed - 1) * _alphabet.size() + c];
             }
-            System.err.printf("] %c -> ", alphabet().toChar(c));
+            sync();
         }
-        c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(c));
+        advanceRotors();
+        if (_trace != null) {
+            return convertTraced(c);
+        } else if (_composites != null) {
+            return composite()[c];
         }
+        c = plugboard().permute(c);
         c = applyRotors(c);
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c%n", alphabet().toChar(c));
+        return c;
+    }
+
+    /** Record the conversions of C into my trace buffer, as described in
+     *  TraceBuffer, and return the converted C. */
+    private int convertTraced(int c) {
+        int[] record = _trace.records();
+        int k = _trace.claim();
+        for (int i = 1; i < rotorsInUse.length; i += 1) {
+            record[k++] = rotorsInUse[i].setting();
         }
+        record[k++] = c;
+        c = plugboard().permute(c);
+        record[k++] = c;
+        for (int i = rotorsInUse.length - 1; i >= 0; i -= 1) {
+            c = rotorsInUse[i].convertForward(c);
+            record[k++] = c;
+        }
+        for (int i = 1; i < rotorsInUse.length; i += 1) {
+            c = rotorsInUse[i].convertBackward(c);
+            record[k++] = c;
+        }
+        c = plugboard().permute(c);
+        record[k] = c;
         return c;
     }
 
-    /** Advance all rotors to their next position. */
+    /** Record every character I convert from now on in TRACE, which must
+     *  be for machines with numRotors() slots, or stop tracing if TRACE
+     *  is null. */
+    void setTrace(TraceBuffer trace) {
+        if (trace != null && trace.numRotors() != _numRotors) {
+            throw error("trace buffer is for a different machine");
+        }
+        sync();
+        _trace = trace;
+    }
+
+    /** Return my trace buffer, or null if I am not being traced. */
+    TraceBuffer trace() {
+        return _trace;
+    }
+
+    /** Advance all rotors to their next position.  Working from the
+     *  right, each moving rotor advances if it is the rightmost, if the
+     *  rotor to its right was at a notch, or if it is itself at a notch
+     *  and has a pawl to its left (the double step).  Each rotor's notch
+     *  is tested before it moves, and nothing is allocated. */
     private void advanceRotors() {
-        boolean [] b = new boolean[movingRotors.length];
-        for (int i = movingRotors.length - 1; i > 0; i--) {
-            if (movingRotors[i].atNotch()) {
-                b[i - 1] = true;
-                b[i] = true;
+        boolean carry = true;
+        for (int i = movingRotors.length - 1; i >= 0; i -= 1) {
+            Rotor rotor = movingRotors[i];
+            boolean notch = i > 0 && rotor.atNotch();
+            if (carry || notch) {
+                rotor.advance();
+                _steps += 1;
             }
+            if (notch) {
+                _carries += 1;
+            }
+            carry = notch;
         }
-        b[movingRotors.length - 1] = true;
-        for (int i = 0; i < b.length; i++) {
-            if (b[i]) {
-                movingRotors[i].advance();
+    }
+
+    /** Add to METRICS the numbers of characters I have converted, of
+     *  rotor advances, and of carries from rotors at their notches since
+     *  I was created or last reported, and start counting again.  Rotors
+     *  moved by seek, or skipped over by a replayed keystream, are not
+     *  counted. */
+    void reportTo(Metrics metrics) {
+        metrics.count(_converted, _steps, _carries);
+        _converted = _steps = _carries = 0;
+    }
+
+    /** Advance the machine by N >= 0 positions, leaving it as if N
+     *  characters had been converted.  Takes time roughly proportional to
+     *  the number of distinct positions the moving rotors other than the
+     *  leftmost pass through before repeating, rather than to N. */
+    void seek(long n) {
+        if (n < 0) {
+            throw error("cannot seek backwards");
+        }
+        sync();
+        int last = movingRotors.length - 1;
+        if (last < 0 || n == 0) {
+            return;
+        }
+        int[] pos = new int[last + 1];
+        for (int i = 0; i <= last; i += 1) {
+            pos[i] = movingRotors[i].setting();
+        }
+        int size = _alphabet.size();
+        if (last == 0) {
+            pos[0] = (int) ((pos[0] + n % size) % size);
+        } else {
+            HashMap<Long, long[]> seen = null;
+            if (Math.pow(size, last) < Long.MAX_VALUE) {
+                seen = new HashMap<Long, long[]>();
+            }
+            long done = 0, carries = 0;
+            while (done < n) {
+                if (seen != null) {
+                    long key = 0;
+                    for (int i = 1; i <= last; i += 1) {
+                        key = key * size + pos[i];
+                    }
+                    long[] then = seen.put(key, new long[] { done, carries });
+                    if (then != null) {
+                        long cycles = (n - done) / (done - then[0]);
+                        long moves = (carries - then[1]) % size;
+                        done += cycles * (done - then[0]);
+                        pos[0] = (int) ((pos[0] + cycles % size * moves)
+                                        % size);
+                        seen = null;
+                        continue;
+                    }
+                }
+                if (movingRotors[1].atNotch(pos[1])) {
+                    step(pos, 0);
+                    carries += 1;
+                    done += 1;
+                } else {
+                    done += skip(pos, 1, n - done);
+                }
+            }
+        }
+        for (int i = 0; i <= last; i += 1) {
+            movingRotors[i].set(pos[i]);
+        }
+    }
+
+    /** Advance moving rotors K and up, whose settings are POS[K..], by
+     *  at most N keypresses, stopping before any keypress that would
+     *  find moving rotor K at a notch (and so carry into rotor K - 1).
+     *  Rotors to the left of K are not moved.  Returns the number of
+     *  keypresses performed. */
+    private long skip(int[] pos, int k, long n) {
+        int last = pos.length - 1;
+        long done = 0;
+        while (done < n && !movingRotors[k].atNotch(pos[k])) {
+            if (k == last) {
+                long d = Math.min(n - done,
+                                  movingRotors[k].distanceToNotch(pos[k]));
+                int size = _alphabet.size();
+                pos[k] = (int) ((pos[k] + d % size) % size);
+                done += d;
+            } else if (movingRotors[k + 1].atNotch(pos[k + 1])) {
+                step(pos, k);
+                done += 1;
+            } else {
+                done += skip(pos, k + 1, n - done);
+            }
+        }
+        return done;
+    }
+
+    /** Perform one keypress on moving rotors K and up, whose settings are
+     *  POS[K..], following the same rules as advanceRotors. */
+    private void step(int[] pos, int k) {
+        int last = pos.length - 1;
+        for (int i = k; i <= last; i += 1) {
+            if (i == last || movingRotors[i + 1].atNotch(pos[i + 1])
+                || (i > 0 && movingRotors[i].atNotch(pos[i]))) {
+                pos[i] = movingRotors[i].permutation().wrap(pos[i] + 1);
             }
         }
     }
@@ -153,43 +423,332 @@ class Machine {
         return d;
     }
 
+    /** Return the substitution performed by the whole machine (plugboard,
+     *  rotors, reflector, rotors, plugboard) in its current position,
+     *  taking it from _composites or computing and caching it. */
+    private int[] composite() {
+        long key = 0;
+        for (int i = 1; i < rotorsInUse.length; i += 1) {
+            key = key * _alphabet.size() + rotorsInUse[i].offset();
+        }
+        int[] table = _composites.get(key);
+        if (table == null) {
+            table = _composites.put(key);
+            fillComposite(table, 0);
+        }
+        return table;
+    }
+
+    /** Store the substitution performed by the whole machine in its
+     *  current position into TABLE, starting at OFF. */
+    private void fillComposite(int[] table, int off) {
+        Permutation plugboard = plugboard();
+        for (int c = 0; c < _alphabet.size(); c += 1) {
+            int d = applyRotors(plugboard.permute(c));
+            table[off + c] = plugboard.permute(d);
+        }
+    }
+
     /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
+     *  the rotors accordingly.  Spaces separate words and are kept, except
+     *  that trailing spaces are dropped. */
     String convert(String msg) {
-        String[] words = msg.split(" ");
-        String[] codedWord = new String [words.length];
-        for (int j = 0; j < words.length; j++) {
-            String r = "";
-            for (int i = 0; i < words[j].length(); i++) {
-                int a = alphabet().toInt(words[j].charAt(i));
-                r += alphabet().toChar(convert(a));
-            }
-            codedWord[j] = r;
-        }
-        String f = "";
-        for (int i = 0; i < codedWord.length; i++) {
-            if (i == codedWord.length - 1) {
-                f += codedWord[i];
+        int len = msg.length();
+        while (len > 0 && msg.charAt(len - 1) == ' ') {
+            len -= 1;
+        }
+        if (_alphabet.supplementary()) {
+            StringBuilder result = new StringBuilder(len);
+            int ch;
+            for (int i = 0; i < len; i += Character.charCount(ch)) {
+                ch = msg.codePointAt(i);
+                result.appendCodePoint(ch == ' ' ? ch
+                                       : _alphabet.toCodePoint(
+                                           convert(index(ch))));
+            }
+            return result.toString();
+        }
+        char[] buf = new char[len];
+        msg.getChars(0, len, buf, 0);
+        convert(buf, 0, len, buf, 0);
+        return new String(buf);
+    }
+
+    /** Convert the LEN characters of IN starting at OFF, storing the
+     *  results in OUT starting at OUTOFF and updating the state of the
+     *  rotors accordingly.  Spaces are copied unchanged; all other
+     *  characters must be in my alphabet.  IN and OUT may be the same
+     *  array, provided the output does not overtake unread input.
+     *  Supplementary characters (see Alphabet) cannot be converted this
+     *  way; use convert(String) for them. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        if (_block == null) {
+            _block = new int[BLOCK_SIZE];
+        }
+        int[] block = _block;
+        for (int i = 0; i < len;) {
+            int n, j;
+            for (n = 0, j = i; j < len && n < block.length; j += 1) {
+                char ch = in[off + j];
+                if (ch != ' ') {
+                    block[n] = _alphabet.toInt(ch);
+                    if (block[n] < 0) {
+                        break;
+                    }
+                    n += 1;
+                }
+            }
+            convert(block, 0, n, block, 0);
+            for (int k = 0; i < j; i += 1) {
+                char ch = in[off + i];
+                out[outOff + i] = ch == ' ' ? ch : _alphabet.toChar(block[k++]);
+            }
+            if (j < len && n < block.length) {
+                throw error("character '%c' not in alphabet", in[off + j]);
+            }
+        }
+    }
+
+    /** Convert all remaining characters of IN, as for convert(char[],
+     *  int, int, char[], int), putting the results into OUT.  Advances
+     *  the positions of both buffers. */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (in.hasArray() && out.hasArray()) {
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.limit());
+            out.position(out.position() + len);
+        } else {
+            while (in.hasRemaining()) {
+                out.put(convertChar(in.get()));
+            }
+        }
+    }
+
+    /** Convert IN[OFF .. OFF+LEN-1] into OUT starting at OUTOFF, as for
+     *  convert(char[], int, int, char[], int), but dividing the work into
+     *  chunks that are converted concurrently by POOL, each by a copy of
+     *  me sought to the position at which its chunk starts.  The copies
+     *  are made from one snapshot taken on the calling thread, so that
+     *  the tasks never touch me (copying me may bring a replayed
+     *  keystream up to date; see replay).  The result,
+     *  and my state afterwards, are exactly those of the sequential
+     *  conversion.  IN and OUT must not overlap unless they are the same
+     *  region. */
+    void convertParallel(char[] in, int off, int len, char[] out,
+                         int outOff, ForkJoinPool pool) {
+        convertParallel(in, off, len, out, outOff, pool, PARALLEL_CHUNK);
+    }
+
+    /** Convert as for convertParallel(IN, OFF, LEN, OUT, OUTOFF, POOL),
+     *  using chunks of CHUNK characters. */
+    void convertParallel(char[] in, int off, int len, char[] out,
+                         int outOff, ForkJoinPool pool, int chunk) {
+        int chunks = (len + chunk - 1) / chunk;
+        long[] starts = new long[chunks + 1];
+        List<ForkJoinTask<?>> counts = new ArrayList<ForkJoinTask<?>>();
+        for (int i = 0; i < chunks; i += 1) {
+            final int k = i;
+            counts.add(pool.submit(() -> {
+                int end = off + Math.min(len, (k + 1) * chunk);
+                for (int j = off + k * chunk; j < end; j += 1) {
+                    if (in[j] != ' ') {
+                        starts[k + 1] += 1;
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : counts) {
+            task.join();
+        }
+        for (int i = 0; i < chunks; i += 1) {
+            starts[i + 1] += starts[i];
+        }
+        Machine start = copy();
+        List<ForkJoinTask<?>> conversions = new ArrayList<ForkJoinTask<?>>();
+        for (int i = 0; i < chunks; i += 1) {
+            final int k = i;
+            conversions.add(pool.submit(() -> {
+                Machine m = start.copy();
+                m.seek(starts[k]);
+                m.convert(in, off + k * chunk, Math.min(chunk, len - k * chunk),
+                          out, outOff + k * chunk);
+            }));
+        }
+        for (ForkJoinTask<?> task : conversions) {
+            task.join();
+        }
+        seek(starts[chunks]);
+    }
+
+    /** Convert the LEN alphabet indices of IN starting at OFF, storing
+     *  the resulting indices in OUT starting at OUTOFF and updating the
+     *  state of the rotors accordingly. */
+    void convert(int[] in, int off, int len, int[] out, int outOff) {
+        for (int i = 0; i < len;) {
+            int span = span(len - i);
+            if (span < MIN_SPAN) {
+                out[outOff + i] = convert(in[off + i]);
+                i += 1;
             } else {
-                f += codedWord[i] + " ";
+                convertSpan(in, off + i, span, out, outOff + i);
+                i += span;
+            }
+        }
+    }
+
+    /** Return how many of my next N keypresses (at most) will move only
+     *  my fast (rightmost) rotor, or 0 if the conversions cannot be done
+     *  by convertSpan: when tracing, replaying a keystream, caching
+     *  composites, or when there is no moving rotor in the rightmost
+     *  slot. */
+    private int span(int n) {
+        int last = movingRotors.length - 1;
+        if (_trace != null || _keystream != null || _composites != null
+            || last < 0 || movingRotors[last] != rotorsInUse[_numRotors - 1]) {
+            return 0;
+        }
+        for (int i = 1; i < last; i += 1) {
+            if (movingRotors[i].atNotch()) {
+                return 0;
+            }
+        }
+        if (last == 0) {
+            return n;
+        }
+        Rotor fast = movingRotors[last];
+        return (int) Math.min(n, fast.distanceToNotch(fast.setting()));
+    }
+
+    /** Convert IN[OFF .. OFF+LEN-1] into OUT starting at OUTOFF, as for
+     *  convert(int[], int, int, int[], int), where LEN is at most
+     *  span(LEN), so that only the fast rotor moves.  The rest of the
+     *  machine (plugboard aside) is then a fixed substitution, which is
+     *  worked out as needed, at most once per character, and the loop
+     *  varies only the offset of the fast rotor. */
+    private void convertSpan(int[] in, int off, int len, int[] out,
+                             int outOff) {
+        int size = _alphabet.size();
+        if (_spanTable == null) {
+            _spanTable = new int[size];
+            _spanStamp = new int[size];
+        }
+        _spanGeneration += 1;
+        if (_spanGeneration == 0) {
+            Arrays.fill(_spanStamp, 0);
+            _spanGeneration = 1;
+        }
+        int generation = _spanGeneration;
+        int[] table = _spanTable, stamp = _spanStamp;
+        int[] plug = plugboard().forwardTable();
+        Rotor fast = movingRotors[movingRotors.length - 1];
+        int[] forward = fast.permutation().forwardTable();
+        int[] inverse = fast.permutation().inverseTable();
+        int offset = fast.offset();
+        for (int i = 0; i < len; i += 1) {
+            offset = offset + 1 == size ? 0 : offset + 1;
+            int p = plug[in[off + i]] + offset;
+            p = forward[p >= size ? p - size : p] - offset;
+            p = p < 0 ? p + size : p;
+            if (stamp[p] != generation) {
+                stamp[p] = generation;
+                table[p] = applyFixedRotors(p);
             }
+            p = table[p] + offset;
+            p = inverse[p >= size ? p - size : p] - offset;
+            out[outOff + i] = plug[p < 0 ? p + size : p];
+        }
+        fast.set(fast.permutation().wrap(fast.setting() + len));
+        _converted += len;
+        _steps += len;
+    }
+
+    /** Return the result of passing contact P (an alphabet index) from
+     *  the fast rotor through all my other rotors and back. */
+    private int applyFixedRotors(int p) {
+        for (int i = _numRotors - 2; i >= 0; i -= 1) {
+            p = rotorsInUse[i].convertForward(p);
+        }
+        for (int i = 1; i < _numRotors - 1; i += 1) {
+            p = rotorsInUse[i].convertBackward(p);
+        }
+        return p;
+    }
+
+    /** Return the conversion of character CH, or CH itself if it is a
+     *  space. */
+    private char convertChar(char ch) {
+        if (ch == ' ') {
+            return ch;
+        }
+        return _alphabet.toChar(convert(index(ch)));
+    }
+
+    /** Return the index of CH, a code point, in my alphabet, reporting an
+     *  error if it is not there. */
+    private int index(int ch) {
+        int c = _alphabet.toInt(ch);
+        if (c < 0) {
+            throw error("character '%c' not in alphabet", ch);
         }
-        return f;
+        return c;
     }
 
 
+    /** Shortest run of fast-rotor-only keypresses converted by
+     *  convertSpan; shorter runs are not worth setting up. */
+    private static final int MIN_SPAN = 4;
+
+    /** Number of characters of a char[] converted at a time through
+     *  convert(int[], int, int, int[], int). */
+    private static final int BLOCK_SIZE = 1 << 10;
+
+    /** Default number of characters given to each task by
+     *  convertParallel. */
+    static final int PARALLEL_CHUNK = 1 << 16;
+
+    /** Description of this machine, shared with others like it. */
+    private final MachineSpec _spec;
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
     /** Number of rotors. */
     private final int _numRotors;
     /** Number of pawls. */
     private final int _pawls;
-    /** All rotors in machine. */
-    private HashMap<String, Rotor> _allRotorsH;
     /** plugboard permutation. */
     private Permutation _plugboard;
     /** Array of rotors in use. */
     private Rotor[] rotorsInUse;
     /** Array of moving rotors. */
     private Rotor[] movingRotors;
+    /** Record of conversions, or null if not tracing. */
+    private TraceBuffer _trace;
+    /** Cached whole-machine substitutions, or null if not caching. */
+    private CompositeCache _composites;
+    /** Substitutions being replayed (see replay), or null. */
+    private int[] _keystream;
+    /** Number of substitutions in _keystream. */
+    private int _keystreamLength;
+    /** Number of characters converted from _keystream so far. */
+    private int _replayed;
+    /** Characters converted since last reported (see reportTo). */
+    private long _converted;
+    /** Rotor advances since last reported. */
+    private long _steps;
+    /** Carries from rotors at their notches since last reported. */
+    private long _carries;
+    /** Alphabet indices being converted by convert(char[], ...), or
+     *  null until first needed. */
+    private int[] _block;
+    /** The substitution of all but the fast rotor during a span (see
+     *  convertSpan), valid where _spanStamp is _spanGeneration. */
+    private int[] _spanTable;
+    /** The span for which each entry of _spanTable was computed. */
+    private int[] _spanStamp;
+    /** Number of the current span. */
+    private int _spanGeneration;
 }
@@ -0,0 +1,80 @@
+package enigma;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** An immutable description of an Enigma machine: its alphabet, its
+ *  numbers of rotor slots and pawls, and the rotors available to it.  A
+ *  spec may be shared by any number of threads.  Each Machine made from
+ *  it gets rotors of its own, so the machines' settings are independent
+ *  while their wiring tables are shared.
+ *  @author Michelle
+ */
+final class MachineSpec {
+
+    /** A spec for machines with alphabet ALPHA, 1 < NUMROTORS rotor
+     *  slots, and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all
+     *  the available rotors; they are copied, so later changes to them
+     *  do not affect the spec. */
+    MachineSpec(Alphabet alpha, int numRotors, int pawls,
+                Collection<Rotor> allRotors) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _pawls = pawls;
+        Map<String, Rotor> rotors = new LinkedHashMap<String, Rotor>();
+        for (Rotor rotor : allRotors) {
+            Rotor template = rotor.copy();
+            template.set(0);
+            template.setRing(0);
+            rotors.put(template.name(), template);
+        }
+        _rotors = Collections.unmodifiableMap(rotors);
+    }
+
+    /** Return the alphabet of my machines. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots of my machines. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls of my machines. */
+    int numPawls() {
+        return _pawls;
+    }
+
+    /** Return the names of my available rotors, in the order given. */
+    Collection<String> rotorNames() {
+        return _rotors.keySet();
+    }
+
+    /** Return true iff I have a rotor named NAME. */
+    boolean hasRotor(String name) {
+        return _rotors.containsKey(name);
+    }
+
+    /** Return a new rotor, at its 0 setting, like my rotor named NAME. */
+    Rotor newRotor(String name) {
+        Rotor template = _rotors.get(name);
+        if (template == null) {
+            throw error("Rotor not in config file");
+        }
+        return template.copy();
+    }
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Number of pawls. */
+    private final int _pawls;
+    /** My rotors, at setting 0, by name.  Never altered. */
+    private final Map<String, Rotor> _rotors;
+}
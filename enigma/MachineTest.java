@@ -1,6 +1,8 @@
 package enigma;
 
+import java.nio.CharBuffer;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -36,6 +38,12 @@ public class MachineTest {
         ROTORS.put("I",
                 new MovingRotor("I", new Permutation(nav.get("I"), AZ),
                         "Q"));
+        ROTORS.put("VI",
+                new MovingRotor("VI", new Permutation(nav.get("VI"), AZ),
+                        "ZM"));
+        ROTORS.put("II",
+                new MovingRotor("II", new Permutation(nav.get("II"), AZ),
+                        "E"));
 
     }
 
@@ -56,11 +64,79 @@ public class MachineTest {
         assertEquals(5, mach.numRotors());
         assertEquals(3, mach.numPawls());
         assertEquals(AZ, mach.alphabet());
-        assertEquals(ROTORS.get("B"), mach.getRotor(0));
-        assertEquals(ROTORS.get("Beta"), mach.getRotor(1));
-        assertEquals(ROTORS.get("III"), mach.getRotor(2));
-        assertEquals(ROTORS.get("IV"), mach.getRotor(3));
-        assertEquals(ROTORS.get("I"), mach.getRotor(4));
+        for (int i = 0; i < ROTORS1.length; i += 1) {
+            assertEquals(ROTORS1[i], mach.getRotor(i).name());
+            assertNotSame(ROTORS.get(ROTORS1[i]), mach.getRotor(i));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testInsertRepeatedRotor() {
+        Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "III" });
+    }
+
+    @Test
+    public void testSharedSpec() {
+        MachineSpec spec = new MachineSpec(AZ, 5, 3, ROTORS.values());
+        Machine mach1 = new Machine(spec);
+        Machine mach2 = new Machine(spec);
+        mach1.insertRotors(ROTORS1);
+        mach2.insertRotors(ROTORS1);
+        mach1.setRotors(SETTING1);
+        mach2.setRotors("AXLE");
+        Machine ref2 = mach1.copy();
+        ref2.setRotors("AXLE");
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        String expected2 = ref2.convert(msg);
+        mach1.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        StringBuilder out1 = new StringBuilder();
+        StringBuilder out2 = new StringBuilder();
+        for (int i = 0; i < msg.length(); i += 1) {
+            int c = AZ.toInt(msg.charAt(i));
+            out1.append(AZ.toChar(mach1.convert(c)));
+            out2.append(AZ.toChar(mach2.convert(c)));
+        }
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", out1.toString());
+        assertEquals(expected2.replace(" ", ""), out2.toString());
+    }
+
+    @Test
+    public void testSharedSpecThreads() throws InterruptedException {
+        final MachineSpec spec =
+            new MachineSpec(AZ, 5, 3, ROTORS.values());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i += 1) {
+            text.append((char) ('A' + (i * 7) % 26));
+        }
+        final String msg = text.toString();
+        Machine ref = new Machine(spec);
+        ref.insertRotors(ROTORS1);
+        ref.setRotors(SETTING1);
+        final String expected = ref.convert(msg);
+        final String[] results = new String[4];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            final int k = t;
+            threads[t] = new Thread(() -> {
+                for (int rep = 0; rep < 20; rep += 1) {
+                    Machine mach = new Machine(spec);
+                    mach.insertRotors(ROTORS1);
+                    mach.setRotors(SETTING1);
+                    results[k] = mach.convert(msg);
+                    if (!expected.equals(results[k])) {
+                        return;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            assertEquals(expected, result);
+        }
     }
 
     @Test
@@ -77,4 +153,263 @@ public class MachineTest {
         assertEquals("QVPQSOKOILPUBKJZPISFXDW",
                 mach.convert("FROMHISSHOULDERHIAWATHA"));
     }
+
+    @Test
+    public void testConvertSpaces() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        assertEquals(" QVPQ SOKOILPUBKJ  ZPISFXDW",
+                mach.convert(" FROM HISSHOULDER  HIAWATHA   "));
+    }
+
+    @Test
+    public void testConvertBulk() {
+        String msg = "FROM HISSHOULDER HIAWATHA";
+        String expected = "QVPQ SOKOILPUBKJ ZPISFXDW";
+        Permutation plug = new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ);
+
+        Machine mach = mach1();
+        mach.setPlugboard(plug);
+        char[] out = new char[msg.length() + 2];
+        mach.convert(msg.toCharArray(), 0, msg.length(), out, 2);
+        assertEquals(expected, new String(out, 2, msg.length()));
+
+        mach = mach1();
+        mach.setPlugboard(plug);
+        CharBuffer in = CharBuffer.wrap(msg);
+        CharBuffer result = CharBuffer.allocate(msg.length());
+        mach.convert(in, result);
+        assertFalse(in.hasRemaining());
+        result.flip();
+        assertEquals(expected, result.toString());
+
+        mach = mach1();
+        mach.setPlugboard(plug);
+        String letters = msg.replace(" ", "");
+        int[] indices = new int[letters.length()];
+        for (int i = 0; i < indices.length; i += 1) {
+            indices[i] = AZ.toInt(letters.charAt(i));
+        }
+        mach.convert(indices, 0, indices.length, indices, 0);
+        for (int i = 0; i < indices.length; i += 1) {
+            assertEquals(expected.replace(" ", "").charAt(i),
+                         AZ.toChar(indices[i]));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testConvertBadChar() {
+        mach1().convert("ABcD");
+    }
+
+    @Test
+    public void testCompositeCache() {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 2000; i += 1) {
+            msg.append((char) ('A' + (i * 7 + i / 26) % 26));
+        }
+        Permutation plug = new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ);
+        Machine plain = mach1();
+        plain.setPlugboard(plug);
+        String expected = plain.convert(msg.toString());
+        for (int tables : new int[] { 1, 4, 1 << 16 }) {
+            Machine cached = mach1();
+            cached.cacheComposites(tables);
+            cached.setPlugboard(plug);
+            assertEquals(expected, cached.convert(msg.toString()));
+            cached.setRotors(SETTING1);
+            assertEquals(expected, cached.convert(msg.toString()));
+        }
+    }
+
+    /** Return the settings of the rotors of M, not counting the
+     *  reflector, as a string. */
+    private String settings(Machine m) {
+        String result = "";
+        for (int i = 1; i < m.numRotors(); i += 1) {
+            result += AZ.toChar(m.getRotor(i).setting());
+        }
+        return result;
+    }
+
+    /** Check that seeking a machine with rotors NAMES, PAWLS pawls, and
+     *  initial SETTING by each of several distances matches stepping it
+     *  one character at a time. */
+    private void checkSeek(String[] names, int pawls, String setting) {
+        Machine stepped = new Machine(AZ, names.length, pawls,
+                                      ROTORS.values());
+        stepped.insertRotors(names);
+        stepped.setRotors(setting);
+        String[] expected = new String[3000];
+        for (int i = 0; i < expected.length; i += 1) {
+            expected[i] = settings(stepped);
+            stepped.convert(0);
+        }
+        for (int n : new int[] { 0, 1, 2, 25, 26, 27, 650, 651, 2999 }) {
+            Machine sought = new Machine(AZ, names.length, pawls,
+                                         ROTORS.values());
+            sought.insertRotors(names);
+            sought.setRotors(setting);
+            sought.seek(n);
+            assertEquals("seek " + n + " from " + setting,
+                         expected[n], settings(sought));
+        }
+    }
+
+    @Test
+    public void testSeek() {
+        checkSeek(ROTORS1, 3, SETTING1);
+        checkSeek(ROTORS1, 3, "AXDQ");
+        checkSeek(ROTORS1, 3, "AVJP");
+        checkSeek(new String[] { "B", "Beta", "I" }, 1, "AQ");
+        checkSeek(new String[] { "B", "III", "VI" }, 2, "VL");
+        checkSeek(new String[] { "B", "VI", "II", "III", "I" }, 4, "YDUP");
+        checkSeek(new String[] { "B", "VI", "II", "III", "I" }, 4, "MEVQ");
+    }
+
+    @Test
+    public void testDoubleStep() {
+        Machine mach = mach1();
+        mach.setRotors("AUIP");
+        String[] expected = { "AUIQ", "AUJR", "AVKS", "AVKT" };
+        for (String setting : expected) {
+            mach.convert(0);
+            assertEquals(setting, settings(mach));
+        }
+    }
+
+    @Test
+    public void testNoPawls() {
+        Machine mach = new Machine(AZ, 2, 0, ROTORS.values());
+        mach.insertRotors(new String[] { "B", "Beta" });
+        mach.setRotors("C");
+        String once = mach.convert("HELLOWORLD");
+        assertEquals(once, mach.convert("HELLOWORLD"));
+        assertEquals("HELLOWORLD", mach.convert(once));
+        mach.seek(100);
+        assertEquals("C", settings(mach));
+    }
+
+    /** Check that converting a long run of indices in bulk with a
+     *  machine with rotors NAMES, PAWLS pawls, and initial SETTING gives
+     *  the same results and final settings as converting one index at a
+     *  time. */
+    private void checkBulk(String[] names, int pawls, String setting) {
+        Machine single = new Machine(AZ, names.length, pawls,
+                                     ROTORS.values());
+        single.insertRotors(names);
+        single.setRotors(setting);
+        single.setPlugboard(new Permutation("(AQ) (EX) (ZB)", AZ));
+        Machine bulk = single.copy();
+        int[] in = new int[20000], expected = new int[in.length];
+        for (int i = 0; i < in.length; i += 1) {
+            in[i] = (i * 7 + i / 26) % 26;
+            expected[i] = single.convert(in[i]);
+        }
+        int[] out = new int[in.length];
+        bulk.convert(in, 0, 100, out, 0);
+        bulk.convert(in, 100, in.length - 100, out, 100);
+        assertArrayEquals(setting, expected, out);
+        assertEquals(settings(single), settings(bulk));
+    }
+
+    @Test
+    public void testBulk() {
+        checkBulk(ROTORS1, 3, SETTING1);
+        checkBulk(ROTORS1, 3, "AUIP");
+        checkBulk(new String[] { "B", "Beta", "I" }, 1, "AQ");
+        checkBulk(new String[] { "B", "III", "VI" }, 2, "VL");
+        checkBulk(new String[] { "B", "VI", "II", "III", "I" }, 4, "MEVQ");
+        checkBulk(new String[] { "B", "Beta" }, 0, "C");
+    }
+
+    @Test
+    public void testConvertCharsError() {
+        Machine mach = mach1();
+        char[] buf = "HELLO WORLD!AGAIN".toCharArray();
+        try {
+            mach.convert(buf, 0, buf.length, buf, 0);
+            fail("no error reported");
+        } catch (EnigmaException excp) {
+            Machine expected = mach1();
+            assertEquals(expected.convert("HELLO WORLD") + "!AGAIN",
+                         new String(buf));
+            assertEquals(settings(expected), settings(mach));
+        }
+    }
+
+    @Test
+    public void testSeekFar() {
+        String[] names = { "B", "VI", "II", "III", "I" };
+        Machine once = new Machine(AZ, 5, 4, ROTORS.values());
+        once.insertRotors(names);
+        once.setRotors("MEVQ");
+        once.seek(1000000000000007L);
+        String expected = settings(once);
+        Machine twice = new Machine(AZ, 5, 4, ROTORS.values());
+        twice.insertRotors(names);
+        twice.setRotors("MEVQ");
+        twice.seek(999999999999000L);
+        twice.seek(1007);
+        assertEquals(expected, settings(twice));
+    }
+
+    @Test
+    public void testConvertParallel() {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 5000; i += 1) {
+            msg.append(i % 11 == 10 ? ' ' : (char) ('A' + (i * 7) % 26));
+        }
+        char[] in = msg.toString().toCharArray();
+        Permutation plug = new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ);
+        Machine seq = mach1();
+        seq.setPlugboard(plug);
+        char[] expected = new char[in.length];
+        seq.convert(in, 0, in.length, expected, 0);
+        String after = settings(seq);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunk : new int[] { 1, 37, 1000, 1 << 16 }) {
+                Machine par = mach1();
+                par.setPlugboard(plug);
+                char[] out = new char[in.length];
+                par.convertParallel(in, 0, in.length, out, 0, pool, chunk);
+                assertArrayEquals(expected, out);
+                assertEquals(after, settings(par));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testConvertParallelAfterReplay() {
+        Machine start = mach1();
+        start.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        char[] in = new char[3000];
+        for (int i = 0; i < in.length; i += 1) {
+            in[i] = (char) ('A' + (i * 11) % 26);
+        }
+        Machine seq = start.copy();
+        char[] expected = new char[in.length];
+        seq.convert(in, 0, 40, expected, 0);
+        seq.convert(in, 40, in.length - 40, expected, 40);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunk : new int[] { 1, 37, 1000 }) {
+                Machine par = new Machine(start.spec());
+                par.replay(start, start.keystream(100), 100);
+                char[] out = new char[in.length];
+                par.convert(in, 0, 40, out, 0);
+                par.convertParallel(in, 40, in.length - 40, out, 40, pool,
+                                    chunk);
+                assertArrayEquals(expected, out);
+                assertEquals(settings(seq), settings(par));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
@@ -1,14 +1,25 @@
 package enigma;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import java.util.Scanner;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collection;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
 
 
 
@@ -23,7 +34,8 @@ public final class Main {
 
     /** Process a sequence of encryptions and decryptions, as
      *  specified by ARGS, where 1 <= ARGS.length <= 3.
-     *  ARGS[0] is the name of a configuration file.
+     *  ARGS[0] is the name of a configuration file, or of an image
+     *  compiled from one (see ConfigImage).
      *  ARGS[1] is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
@@ -33,14 +45,79 @@ public final class Main {
     public static void main(String... args) {
         try {
             CommandArgs options =
-                    new CommandArgs("--verbose --=(.*){1,3}", args);
-            if (!options.ok()) {
-                throw error("Usage: java enigma.Main [--verbose] "
+                    new CommandArgs("--verbose --stream --trace=(.+) "
+                                    + "--jobs=(\\d+) --cache=(\\d+) "
+                                    + "--metrics=(\\d+) --serve=(\\d+) "
+                                    + "--binary=(.+) --=(.*){1,3}", args);
+            boolean serve = options.contains("--serve");
+            boolean binary = options.contains("--binary");
+            if (!options.ok()
+                || serve && (binary || options.get("--").size() > 1)) {
+                throw error("Usage: java enigma.Main [--verbose] [--stream] "
+                        + "[--trace=LOG] [--jobs=N]%n"
+                        + "                        [--cache=N] "
+                        + "[--metrics=SECS] CONFIG [INPUT [OUTPUT]]%n"
+                        + "       java enigma.Main --serve=PORT CONFIG%n"
+                        + "       java enigma.Main --binary=SETTINGS CONFIG "
                         + "[INPUT [OUTPUT]]");
             }
 
+            boolean others = options.contains("--verbose")
+                || options.contains("--stream")
+                || options.contains("--trace")
+                || options.contains("--jobs")
+                || options.contains("--cache")
+                || options.contains("--metrics");
+            if (serve) {
+                if (others) {
+                    throw error("--serve takes no other options");
+                }
+                serve(options.get("--").get(0),
+                      Integer.parseInt(options.getFirst("--serve")));
+                return;
+            }
+            if (binary) {
+                if (others) {
+                    throw error("--binary takes no other options");
+                }
+                binary(options.get("--"), options.getFirst("--binary"));
+                return;
+            }
             _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            _traceLog = options.getFirst("--trace");
+            if (options.contains("--jobs")) {
+                _jobs = Integer.parseInt(options.getFirst("--jobs"));
+                if (_jobs < 1 || verbose() || _traceLog != null) {
+                    throw error("--jobs needs N >= 1 and no tracing");
+                }
+            }
+            if (options.contains("--cache")) {
+                _cache = Integer.parseInt(options.getFirst("--cache"));
+                if (_cache < 1) {
+                    throw error("--cache needs N >= 1");
+                }
+            }
+            ScheduledExecutorService timer = null;
+            if (options.contains("--metrics")) {
+                _metrics = new Metrics();
+                _metrics.register();
+                long period = Long.parseLong(options.getFirst("--metrics"));
+                if (period > 0) {
+                    timer = _metrics.dumpEvery(period, System.err);
+                }
+            }
+            try {
+                new Main(options.get("--"),
+                         options.contains("--stream") || _jobs > 0)
+                    .process();
+            } finally {
+                if (timer != null) {
+                    timer.shutdownNow();
+                }
+                if (_metrics != null) {
+                    _metrics.dump(System.err);
+                }
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -51,7 +128,31 @@ public final class Main {
     /** Open the necessary files for non-option arguments ARGS (see comment
      *  on main). */
     Main(List<String> args) {
-        _config = getInput(args.get(0));
+        this(args, false);
+    }
+
+    /** Open the necessary files for non-option arguments ARGS (see comment
+     *  on main).  If STREAM, messages are read and written through
+     *  buffered channels rather than a Scanner and PrintStream. */
+    Main(List<String> args, boolean stream) {
+        _config = args.get(0);
+
+        if (stream) {
+            if (args.size() > 1) {
+                _inputChannel = new ChannelReader(getInputChannel(args.get(1)));
+            } else {
+                _inputChannel = new ChannelReader(
+                        new FileInputStream(FileDescriptor.in).getChannel());
+            }
+            if (args.size() > 2) {
+                _outputChannel =
+                    new ChannelWriter(getOutputChannel(args.get(2)));
+            } else {
+                _outputChannel = new ChannelWriter(
+                        new FileOutputStream(FileDescriptor.out).getChannel());
+            }
+            return;
+        }
 
         if (args.size() > 1) {
             _input = getInput(args.get(1));
@@ -66,8 +167,47 @@ public final class Main {
         }
     }
 
+    /** Serve jobs for the machine configured by the file named CONFIG
+     *  on the loopback port PORT (any free port if 0) until killed. */
+    private static void serve(String config, int port) {
+        try (Server server = new Server(readConfig(config), port)) {
+            System.err.printf("Listening on port %d%n", server.port());
+            server.serve();
+        } catch (IOException excp) {
+            throw error("server failed: %s", excp.getMessage());
+        }
+    }
+
+    /** Convert the bytes of the file ARGS[1] (default the standard
+     *  input) to the file ARGS[2] (default the standard output) with the
+     *  machine configured by the file ARGS[0], which must have a
+     *  256-character alphabet, set up by the settings line SETTINGS.
+     *  Byte B is treated as the character with index B.  If ARGS[1] and
+     *  ARGS[2] name the same file, it is converted in place. */
+    private static void binary(List<String> args, String settings) {
+        Machine m = new Machine(readConfig(args.get(0)));
+        setUp(m, settings);
+        ByteProcessor processor = new ByteProcessor(m);
+        try {
+            if (args.size() > 2) {
+                processor.processFile(Paths.get(args.get(1)),
+                                      Paths.get(args.get(2)));
+            } else {
+                try (ReadableByteChannel in = args.size() > 1
+                     ? FileChannel.open(Paths.get(args.get(1)))
+                     : new FileInputStream(FileDescriptor.in).getChannel()) {
+                    processor.process(in,
+                                      new FileOutputStream(FileDescriptor.out)
+                                      .getChannel());
+                }
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
     /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    static Scanner getInput(String name) {
         try {
             return new Scanner(new File(name));
         } catch (IOException excp) {
@@ -84,23 +224,133 @@ public final class Main {
         }
     }
 
+    /** Return a channel reading from the file named NAME. */
+    private FileChannel getInputChannel(String name) {
+        try {
+            return FileChannel.open(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a channel writing to the file named NAME. */
+    private FileChannel getOutputChannel(String name) {
+        try {
+            return FileChannel.open(Paths.get(name),
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.WRITE,
+                                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
     private void process() {
-        Machine m = readConfig();
+        long start = System.nanoTime();
+        MachineSpec spec = readConfig(_config);
+        if (_metrics != null) {
+            _metrics.configLoaded(start);
+        }
+        _alphabet = spec.alphabet();
+        Machine m = new Machine(spec);
+        BiConsumer<Machine, String> setUp = Main::setUp;
+        if (_cache > 0) {
+            setUp = new KeystreamCache(spec, _cache, CACHE_BYTES)::setUp;
+        }
+        if (_metrics != null) {
+            setUp = timed(setUp);
+        }
+        startTrace(m);
+        try {
+            if (_inputChannel != null) {
+                processStream(m, setUp);
+            } else {
+                processScanner(m, setUp);
+            }
+        } finally {
+            if (m.trace() != null) {
+                m.trace().close();
+            }
+        }
+    }
+
+    /** Have M record every character it converts: in --verbose form on
+     *  the standard error if verbose(), and in the log named by --trace,
+     *  if any.  Tracing both ways at once is an error. */
+    private void startTrace(Machine m) {
+        TraceSink sink;
+        if (_traceLog != null) {
+            if (verbose()) {
+                throw error("--trace and --verbose are exclusive");
+            }
+            FileOutputStream log;
+            try {
+                log = new FileOutputStream(_traceLog);
+            } catch (IOException excp) {
+                throw error("could not open %s", _traceLog);
+            }
+            boolean started = false;
+            try {
+                sink = new TraceLog(log, _alphabet, m.numRotors());
+                started = true;
+            } catch (IOException excp) {
+                throw error("could not open %s", _traceLog);
+            } finally {
+                if (!started) {
+                    try {
+                        log.close();
+                    } catch (IOException excp) {
+                        /* Already reporting an error. */
+                    }
+                }
+            }
+        } else if (verbose()) {
+            sink = new TraceFormatter(System.err, _alphabet, m.numRotors(),
+                                      false);
+        } else {
+            return;
+        }
+        m.setTrace(new TraceBuffer(m.numRotors(), TRACE_RECORDS, sink));
+    }
+
+    /** Return a set-up function that calls SETUP and records the call
+     *  and its time in _metrics. */
+    private static BiConsumer<Machine, String> timed(
+        BiConsumer<Machine, String> setUp) {
+        return (m, settings) -> {
+            long start = System.nanoTime();
+            setUp.accept(m, settings);
+            _metrics.setUp(start);
+        };
+    }
+
+    /** Apply M, set up for each settings line by SETUP, to the messages
+     *  in _input, sending the results to _output. */
+    private void processScanner(Machine m, BiConsumer<Machine, String> setUp) {
         while (_input.hasNext("\\*")) {
             String a = _input.nextLine();
             if (a.equals("")) {
                 _output.println();
                 continue;
             }
-            setUp(m, a);
+            setUp.accept(m, a);
             while (!(_input.hasNext("\\*")) && _input.hasNext()) {
                 String msg = _input.nextLine();
+                long start = System.nanoTime();
                 String newMsg = m.convert(msg);
+                if (_metrics != null) {
+                    _metrics.converted(start);
+                    m.reportTo(_metrics);
+                    start = System.nanoTime();
+                }
                 printMessageLine(newMsg);
                 _output.println();
+                if (_metrics != null) {
+                    _metrics.output(start);
+                }
             }
         }
         if (_input.hasNext()) {
@@ -108,48 +358,82 @@ public final class Main {
         }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** Apply M, set up for each settings line by SETUP, to the messages
+     *  read from _inputChannel, sending the results to _outputChannel.
+     *  With --jobs, settings blocks are converted in parallel. */
+    private void processStream(Machine m, BiConsumer<Machine, String> setUp) {
+        StreamProcessor processor =
+            new StreamProcessor(m, setUp, _inputChannel, _outputChannel);
+        processor.setMetrics(_metrics);
         try {
-            if (_config.hasNext("\\d")) {
+            if (_jobs == 0) {
+                processor.process();
+                return;
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(_jobs);
+            try {
+                processor.process(pool, BLOCKS_PER_JOB * _jobs);
+            } finally {
+                pool.shutdownNow();
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+    /** Return a description of the Enigma machine configured by the
+     *  file named NAME, which is either a text configuration file or an
+     *  image compiled from one by ConfigImage. */
+    static MachineSpec readConfig(String name) {
+        if (ConfigImage.isImage(name)) {
+            return ConfigImage.read(name);
+        }
+        return readConfig(getInput(name));
+    }
+
+    /** Return a description of the Enigma machine configured by the
+     *  contents of configuration file CONFIG. */
+    static MachineSpec readConfig(Scanner config) {
+        try {
+            if (config.hasNext("\\d")) {
                 throw new EnigmaException("no alphabet set");
             }
-            _alphabet = new Alphabet(_config.next());
-            if (!(_config.hasNext("\\d"))) {
+            Alphabet alphabet = new Alphabet(config.next());
+            if (!(config.hasNext("\\d"))) {
                 throw new EnigmaException("no rotor input set");
             }
-            int numRotors = Integer.parseInt(_config.next());
-            int numPawls = Integer.parseInt(_config.next());
+            int numRotors = Integer.parseInt(config.next());
+            int numPawls = Integer.parseInt(config.next());
             Collection<Rotor> allRotors = new ArrayList<Rotor>();
-            while (_config.hasNext()) {
-                allRotors.add(readRotor());
+            while (config.hasNext()) {
+                allRotors.add(readRotor(config, alphabet));
             }
-            return new Machine(_alphabet, numRotors, numPawls, allRotors);
+            return new MachineSpec(alphabet, numRotors, numPawls, allRotors);
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Return a rotor over ALPHABET, reading its description from
+     *  CONFIG. */
+    private static Rotor readRotor(Scanner config, Alphabet alphabet) {
         try {
-            String name = _config.next();
-            String temp = _config.next();
+            String name = config.next();
+            String temp = config.next();
             String rotorType = String.valueOf(temp.charAt(0));
             String notches = temp.substring(1);
             String cycles = "";
             String pattern = "(\\([^\\(\\)\\*]*\\))+";
-            while (_config.hasNext(pattern)) {
-                cycles += _config.next(pattern);
+            while (config.hasNext(pattern)) {
+                cycles += config.next(pattern);
             }
             if (rotorType.equals("M")) {
-                Permutation p = new Permutation(cycles, _alphabet);
+                Permutation p = new Permutation(cycles, alphabet);
                 return new MovingRotor(name, p, notches);
             } else if (rotorType.equals("N")) {
-                return new FixedRotor(name, new Permutation(cycles, _alphabet));
+                return new FixedRotor(name, new Permutation(cycles, alphabet));
             } else if (rotorType.equals("R")) {
-                return new Reflector(name, new Permutation(cycles, _alphabet));
+                return new Reflector(name, new Permutation(cycles, alphabet));
             } else {
                 throw new EnigmaException("bad rotor description");
             }
@@ -160,7 +444,7 @@ public final class Main {
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+    static void setUp(Machine M, String settings) {
         if (settings.charAt(0) != '*') {
             throw new EnigmaException("wrong input formatting");
         }
@@ -177,14 +461,11 @@ public final class Main {
             }
         }
         M.insertRotors(inputRotors);
-        String rotorSettings = s.next();
-        for (int i = 1; i < M.numRotors(); i++) {
-            M.getRotor(i).set(rotorSettings.charAt(i - 1));
-        }
+        M.setRotors(s.next());
         if (s.hasNext("[^\\(\\)]*")) {
-            ringSettings = s.next();
+            int[] ringSettings = s.next().codePoints().toArray();
             for (int i = 1; i < M.numRotors(); i++) {
-                int charInt = _alphabet.toInt(ringSettings.charAt(i - 1));
+                int charInt = M.alphabet().toInt(ringSettings[i - 1]);
                 M.getRotor(i).setRing(charInt);
             }
         }
@@ -192,7 +473,7 @@ public final class Main {
         while (s.hasNext()) {
             plugboard += s.next();
         }
-        M.setPlugboard(new Permutation(plugboard, _alphabet));
+        M.setPlugboard(new Permutation(plugboard, M.alphabet()));
     }
 
     /** Return true iff verbose option specified. */
@@ -201,17 +482,20 @@ public final class Main {
     }
 
     /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
+     *  have fewer letters).  A supplementary character counts as one
+     *  letter. */
     private void printMessageLine(String msg) {
         String newMsg = msg.replaceAll("\\s", "");
-        for (int i = 0; i < newMsg.length(); i += 5) {
-            if (newMsg.length() <= i + 5) {
-                _output.print(newMsg.substring(i));
+        int letters = newMsg.codePointCount(0, newMsg.length());
+        for (int i = 0, start = 0; i < letters; i += 5) {
+            int end = newMsg.offsetByCodePoints(start,
+                                                Math.min(5, letters - i));
+            if (letters <= i + 5) {
+                _output.print(newMsg.substring(start));
             } else {
-                int min = Math.min(newMsg.length(), i + 5);
-                String n = newMsg.substring(i, min);
-                _output.print(n + " ");
+                _output.print(newMsg.substring(start, end) + " ");
             }
+            start = end;
         }
     }
 
@@ -221,15 +505,40 @@ public final class Main {
     /** Source of input messages. */
     private Scanner _input;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Name of the machine configuration file. */
+    private String _config;
 
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
+    /** Source of input messages when streaming, else null. */
+    private ChannelReader _inputChannel;
+
+    /** Destination for encoded/decoded messages when streaming. */
+    private ChannelWriter _outputChannel;
+
     /** True if --verbose specified. */
     private static boolean _verbose;
 
-    /** String of ring settings. */
-    private String ringSettings;
+    /** Name of the binary trace log given by --trace, or null. */
+    private static String _traceLog;
+
+    /** Number of records buffered between writes of a trace. */
+    private static final int TRACE_RECORDS = 1 << 12;
+
+    /** Number of worker threads given by --jobs, or 0. */
+    private static int _jobs;
+
+    /** Settings blocks read ahead per worker with --jobs. */
+    private static final int BLOCKS_PER_JOB = 4;
+
+    /** Number of characters of keystream cached per settings line, given
+     *  by --cache, or 0 for no caching. */
+    private static int _cache;
+
+    /** Bound on the memory taken by cached keystreams with --cache. */
+    private static final long CACHE_BYTES = 1L << 26;
+
+    /** Where work is recorded with --metrics, or null. */
+    private static Metrics _metrics;
 }
@@ -0,0 +1,152 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The menu of a crib: a graph whose nodes are the letters of an
+ *  alphabet and which has an edge between the plaintext and ciphertext
+ *  letters at each position of the crib, labelled with that position.
+ *  If the plugboard takes the letter at one end of an edge to X, it takes
+ *  the letter at the other end to the scrambler's image of X at that
+ *  position.
+ *  @author Michelle
+ */
+class Menu {
+
+    /** The menu of the crib whose plaintext letters (as alphabet
+     *  indices, all less than SIZE) are PLAIN and whose ciphertext
+     *  letters are the corresponding elements of CIPHER. */
+    Menu(int[] plain, int[] cipher, int size) {
+        if (plain.length != cipher.length) {
+            throw error("crib and ciphertext lengths differ");
+        }
+        _size = size;
+        _length = plain.length;
+        int[] degree = new int[size];
+        for (int i = 0; i < _length; i += 1) {
+            if (plain[i] == cipher[i]) {
+                throw error("crib letter %d enciphers to itself", i);
+            }
+            degree[plain[i]] += 1;
+            degree[cipher[i]] += 1;
+        }
+        _start = new int[size + 1];
+        for (int c = 0; c < size; c += 1) {
+            _start[c + 1] = _start[c] + degree[c];
+        }
+        _other = new int[2 * _length];
+        _position = new int[2 * _length];
+        int[] next = _start.clone();
+        for (int i = 0; i < _length; i += 1) {
+            addEdge(next, plain[i], cipher[i], i);
+            addEdge(next, cipher[i], plain[i], i);
+        }
+        findComponents(degree);
+    }
+
+    /** Record the edge from A to B at crib position POSN, where NEXT[A]
+     *  is the next free slot for A's edges. */
+    private void addEdge(int[] next, int a, int b, int posn) {
+        _other[next[a]] = b;
+        _position[next[a]] = posn;
+        next[a] += 1;
+    }
+
+    /** Set _roots to one letter from each connected component of
+     *  letters with positive DEGREE, the most connected letter of the
+     *  largest component first. */
+    private void findComponents(int[] degree) {
+        int[] component = new int[_size];
+        int[] stack = new int[_size];
+        int[] roots = new int[_size];
+        int[] sizes = new int[_size];
+        int count = 0;
+        for (int c = 0; c < _size; c += 1) {
+            if (degree[c] == 0 || component[c] != 0) {
+                continue;
+            }
+            count += 1;
+            component[c] = count;
+            int best = c, top = 0;
+            stack[top++] = c;
+            while (top > 0) {
+                int a = stack[--top];
+                sizes[count - 1] += 1;
+                if (degree[a] > degree[best]) {
+                    best = a;
+                }
+                for (int e = _start[a]; e < _start[a + 1]; e += 1) {
+                    if (component[_other[e]] == 0) {
+                        component[_other[e]] = count;
+                        stack[top++] = _other[e];
+                    }
+                }
+            }
+            roots[count - 1] = best;
+        }
+        int largest = 0;
+        for (int k = 1; k < count; k += 1) {
+            if (sizes[k] > sizes[largest]) {
+                largest = k;
+            }
+        }
+        _roots = new int[count];
+        _roots[0] = roots[largest];
+        for (int k = 0, j = 1; k < count; k += 1) {
+            if (k != largest) {
+                _roots[j++] = roots[k];
+            }
+        }
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the length of my crib. */
+    int length() {
+        return _length;
+    }
+
+    /** Return the index of the first of the edges of letter C in
+     *  other() and position(). */
+    int start(int c) {
+        return _start[c];
+    }
+
+    /** Return the index just past the last of the edges of letter C. */
+    int end(int c) {
+        return _start[c + 1];
+    }
+
+    /** Return the letter at the far end of edge E. */
+    int other(int e) {
+        return _other[e];
+    }
+
+    /** Return the crib position labelling edge E. */
+    int position(int e) {
+        return _position[e];
+    }
+
+    /** Return one letter from each connected component of me, the most
+     *  connected letter of the largest component first.  The array is
+     *  shared and must not be altered. */
+    int[] roots() {
+        return _roots;
+    }
+
+    /** Alphabet size. */
+    private final int _size;
+    /** Crib length. */
+    private final int _length;
+    /** The edges of letter C are those with indices _start[C] to
+     *  _start[C + 1] - 1. */
+    private final int[] _start;
+    /** The letter at the far end of each edge. */
+    private final int[] _other;
+    /** The crib position of each edge. */
+    private final int[] _position;
+    /** A letter from each component. */
+    private int[] _roots;
+}
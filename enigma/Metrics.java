@@ -0,0 +1,204 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import static enigma.EnigmaException.*;
+
+/** Counts and times of the work of the simulator, for monitoring.  All
+ *  counters are LongAdders, which spread updates by different threads
+ *  over separate cells, so recording is not a point of contention.  The
+ *  per-character counts (characters, rotor steps, and notch carries) are
+ *  further kept in plain fields of each Machine and added in by
+ *  Machine.reportTo once per message or block.  The metrics can be
+ *  registered with the platform MBean server, under NAME, and printed
+ *  at a fixed period.
+ *  @author Michelle
+ */
+class Metrics implements MetricsMBean {
+
+    /** The object name under which Metrics are registered. */
+    static final String NAME = "enigma:type=Metrics";
+
+    /** Metrics with all counts zero. */
+    Metrics() {
+        reset();
+    }
+
+    /** Add the time since START, a System.nanoTime() value, to the time
+     *  taken to load the configuration. */
+    void configLoaded(long start) {
+        _configNanos.add(System.nanoTime() - start);
+    }
+
+    /** Count a settings line, and add the time since START to the time
+     *  spent setting up machines. */
+    void setUp(long start) {
+        _settingsBlocks.increment();
+        _setUpNanos.add(System.nanoTime() - start);
+    }
+
+    /** Count a message line, and add the time since START to the time
+     *  spent converting. */
+    void converted(long start) {
+        _messages.increment();
+        _convertNanos.add(System.nanoTime() - start);
+    }
+
+    /** Add the time since START to the time spent writing output. */
+    void output(long start) {
+        _outputNanos.add(System.nanoTime() - start);
+    }
+
+    /** Add CHARACTERS characters converted, ROTORSTEPS rotor advances,
+     *  and NOTCHCARRIES carries from rotors at their notches. */
+    void count(long characters, long rotorSteps, long notchCarries) {
+        _characters.add(characters);
+        _rotorSteps.add(rotorSteps);
+        _notchCarries.add(notchCarries);
+    }
+
+    @Override
+    public long getCharacters() {
+        return _characters.sum();
+    }
+
+    @Override
+    public double getCharactersPerSecond() {
+        double seconds = (System.nanoTime() - _start) / NANOS_PER_SECOND;
+        return seconds > 0 ? getCharacters() / seconds : 0.0;
+    }
+
+    @Override
+    public long getMessages() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getSettingsBlocks() {
+        return _settingsBlocks.sum();
+    }
+
+    @Override
+    public double getConfigMillis() {
+        return millis(_configNanos);
+    }
+
+    @Override
+    public double getSetUpMillis() {
+        return millis(_setUpNanos);
+    }
+
+    @Override
+    public double getConvertMillis() {
+        return millis(_convertNanos);
+    }
+
+    @Override
+    public double getOutputMillis() {
+        return millis(_outputNanos);
+    }
+
+    @Override
+    public long getRotorSteps() {
+        return _rotorSteps.sum();
+    }
+
+    @Override
+    public long getNotchCarries() {
+        return _notchCarries.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : _counters) {
+            counter.reset();
+        }
+        _start = System.nanoTime();
+    }
+
+    /** Register me with the platform MBean server under NAME, replacing
+     *  any Metrics registered before. */
+    void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new StandardMBean(this, MetricsMBean.class),
+                                 name);
+        } catch (JMException excp) {
+            throw error("could not register metrics: %s", excp.getMessage());
+        }
+    }
+
+    /** Print a summary of my counts and times on OUT every PERIOD > 0
+     *  seconds, on a daemon thread, until the returned executor is shut
+     *  down. */
+    ScheduledExecutorService dumpEvery(long period, PrintStream out) {
+        ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "enigma-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        timer.scheduleAtFixedRate(() -> dump(out), period, period,
+                                  TimeUnit.SECONDS);
+        return timer;
+    }
+
+    /** Print a summary of my counts and times on OUT. */
+    void dump(PrintStream out) {
+        out.printf("metrics: %d chars (%.0f/s), %d messages, %d settings, "
+                   + "%d rotor steps, %d carries; ms: config %.1f, "
+                   + "setup %.1f, convert %.1f, output %.1f%n",
+                   getCharacters(), getCharactersPerSecond(), getMessages(),
+                   getSettingsBlocks(), getRotorSteps(), getNotchCarries(),
+                   getConfigMillis(), getSetUpMillis(), getConvertMillis(),
+                   getOutputMillis());
+    }
+
+    /** Return the total of NANOS in milliseconds. */
+    private static double millis(LongAdder nanos) {
+        return nanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /** Nanoseconds in a second and a millisecond. */
+    private static final double NANOS_PER_SECOND = 1e9,
+        NANOS_PER_MILLI = 1e6;
+
+    /** Characters converted. */
+    private final LongAdder _characters = new LongAdder();
+    /** Message lines converted. */
+    private final LongAdder _messages = new LongAdder();
+    /** Settings lines processed. */
+    private final LongAdder _settingsBlocks = new LongAdder();
+    /** Time loading the configuration. */
+    private final LongAdder _configNanos = new LongAdder();
+    /** Time setting up machines. */
+    private final LongAdder _setUpNanos = new LongAdder();
+    /** Time converting. */
+    private final LongAdder _convertNanos = new LongAdder();
+    /** Time writing output. */
+    private final LongAdder _outputNanos = new LongAdder();
+    /** Rotor advances. */
+    private final LongAdder _rotorSteps = new LongAdder();
+    /** Carries from a rotor at its notch. */
+    private final LongAdder _notchCarries = new LongAdder();
+    /** All of the above. */
+    private final LongAdder[] _counters = {
+        _characters, _messages, _settingsBlocks, _configNanos, _setUpNanos,
+        _convertNanos, _outputNanos, _rotorSteps, _notchCarries,
+    };
+    /** System.nanoTime() when I was created or last reset. */
+    private volatile long _start;
+}
@@ -0,0 +1,45 @@
+package enigma;
+
+/** The management interface of Metrics, as seen through JMX.  It must
+ *  be public for the platform MBean server to introspect it.  Times are
+ *  totals in milliseconds over all threads.
+ *  @author Michelle
+ */
+public interface MetricsMBean {
+
+    /** Return the number of characters converted. */
+    long getCharacters();
+
+    /** Return the characters converted per second since I was created
+     *  or last reset. */
+    double getCharactersPerSecond();
+
+    /** Return the number of message lines converted. */
+    long getMessages();
+
+    /** Return the number of settings lines processed. */
+    long getSettingsBlocks();
+
+    /** Return the time taken to load the configuration. */
+    double getConfigMillis();
+
+    /** Return the time spent setting up machines from settings lines. */
+    double getSetUpMillis();
+
+    /** Return the time spent converting messages. */
+    double getConvertMillis();
+
+    /** Return the time spent writing converted messages. */
+    double getOutputMillis();
+
+    /** Return the number of times a rotor advanced. */
+    long getRotorSteps();
+
+    /** Return the number of times a rotor at a notch carried into the
+     *  rotor to its left. */
+    long getNotchCarries();
+
+    /** Set all counts and times to zero. */
+    void reset();
+
+}
@@ -0,0 +1,114 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author Michelle
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Alphabet ABCD = new Alphabet("ABCD");
+
+    /** Return a machine over ABCD with two moving rotors, both with a
+     *  notch at A, at settings AA. */
+    private static Machine machine() {
+        Machine m = new Machine(ABCD, 3, 2, Arrays.asList(
+            new Reflector("R", new Permutation("(AC) (BD)", ABCD)),
+            new MovingRotor("L", new Permutation("(ABCD)", ABCD), "A"),
+            new MovingRotor("F", new Permutation("(AD) (BC)", ABCD), "A")));
+        m.insertRotors(new String[] { "R", "L", "F" });
+        return m;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMachineCounts() {
+        Metrics metrics = new Metrics();
+        Machine m = machine();
+        m.convert("ABCDABCD");
+        m.reportTo(metrics);
+        assertEquals(8, metrics.getCharacters());
+        assertEquals(2, metrics.getNotchCarries());
+        assertEquals(8 + 2, metrics.getRotorSteps());
+        m.reportTo(metrics);
+        assertEquals(8, metrics.getCharacters());
+        metrics.reset();
+        assertEquals(0, metrics.getCharacters());
+        assertEquals(0, metrics.getRotorSteps());
+    }
+
+    @Test
+    public void testStages() {
+        Metrics metrics = new Metrics();
+        long start = System.nanoTime() - 2000000;
+        metrics.configLoaded(start);
+        metrics.setUp(start);
+        metrics.setUp(start);
+        metrics.converted(start);
+        metrics.output(start);
+        assertEquals(2, metrics.getSettingsBlocks());
+        assertEquals(1, metrics.getMessages());
+        assertTrue(metrics.getConfigMillis() >= 2);
+        assertTrue(metrics.getSetUpMillis() >= 4);
+        assertTrue(metrics.getConvertMillis() >= 2);
+        assertTrue(metrics.getOutputMillis() >= 2);
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i += 1) {
+            threads.add(new Thread(() -> {
+                Machine m = machine();
+                for (int k = 0; k < 1000; k += 1) {
+                    m.convert("ABCD");
+                    metrics.converted(System.nanoTime());
+                    m.reportTo(metrics);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(16000, metrics.getCharacters());
+        assertEquals(4000, metrics.getMessages());
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.register();
+        new Metrics().register();
+        metrics.register();
+        Machine m = machine();
+        m.convert("ABC");
+        m.reportTo(metrics);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.NAME);
+        assertEquals(3L, server.getAttribute(name, "Characters"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, metrics.getCharacters());
+        server.unregisterMBean(name);
+    }
+
+}
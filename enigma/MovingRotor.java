@@ -17,6 +17,11 @@ class MovingRotor extends Rotor {
         setNotch(notches);
     }
 
+    @Override
+    Rotor copy() {
+        return copyState(new MovingRotor(name(), permutation(), notches()));
+    }
+
     @Override
     boolean rotates() {
         return true;
@@ -64,6 +64,23 @@ public class MovingRotorTest {
         checkRotor("Rotor I advanced", UPPER_STRING, NAVALB_MAP.get("I"));
     }
 
+    @Test
+    public void checkNotches() {
+        setRotor("I", NAVALA, "QEQ");
+        for (int p = 0; p < 26; p += 1) {
+            assertEquals(p == 4 || p == 16, rotor.atNotch(p));
+        }
+        assertEquals(0, rotor.distanceToNotch(4));
+        assertEquals(11, rotor.distanceToNotch(5));
+        assertEquals(13, rotor.distanceToNotch(17));
+        rotor.set(16);
+        assertTrue(rotor.atNotch());
+        assertTrue(rotor.copy().atNotch());
+        setRotor("I", NAVALA, "");
+        assertFalse(rotor.atNotch());
+        assertEquals(Long.MAX_VALUE, rotor.distanceToNotch(0));
+    }
+
     @Test
     public void checkRotorSet() {
         setRotor("I", NAVALA, "");
@@ -0,0 +1,123 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** The log probabilities of the sequences of N characters of a language,
+ *  estimated from a sample of it, for scoring trial decryptions.
+ *  Sequences absent from the sample get a small positive probability.
+ *  @author Michelle
+ */
+class NGrams {
+
+    /** The N-gram statistics of the characters of ALPHA in CORPUS.
+     *  Characters of CORPUS not in ALPHA (even in upper case) separate
+     *  runs of text, and no N-gram spans two runs. */
+    NGrams(Alphabet alpha, int n, CharSequence corpus) {
+        if (n < 1 || Math.pow(alpha.size(), n) > MAX_TABLE) {
+            throw error("cannot tabulate %d-grams of %d characters",
+                        n, alpha.size());
+        }
+        _alphabet = alpha;
+        _n = n;
+        _top = (int) Math.pow(alpha.size(), n - 1);
+        int[] counts = new int[_top * alpha.size()];
+        long total = 0;
+        int index = 0, run = 0;
+        for (int i = 0; i < corpus.length(); i += 1) {
+            int c = index(corpus.charAt(i));
+            if (c < 0) {
+                run = 0;
+                continue;
+            }
+            index = (index % _top) * alpha.size() + c;
+            run += 1;
+            if (run >= n) {
+                counts[index] += 1;
+                total += 1;
+            }
+        }
+        if (total == 0) {
+            throw error("no %d-grams in corpus", n);
+        }
+        _logProb = new float[counts.length];
+        for (int i = 0; i < counts.length; i += 1) {
+            _logProb[i] =
+                (float) Math.log((counts[i] + UNSEEN) / total);
+        }
+    }
+
+    /** Return the N-gram statistics of ALPHA in the file named NAME. */
+    static NGrams read(Alphabet alpha, int n, String name) {
+        try {
+            return new NGrams(alpha, n,
+                              new String(Files.readAllBytes(Paths.get(name)),
+                                         StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Return the index in my alphabet of CH, or of its upper-case form,
+     *  or -1 if neither is present. */
+    private int index(char ch) {
+        int c = _alphabet.toInt(ch);
+        return c >= 0 ? c : _alphabet.toInt(Character.toUpperCase(ch));
+    }
+
+    /** Return the length of my sequences. */
+    int n() {
+        return _n;
+    }
+
+    /** Return the sum of the log probabilities of the N-grams of the
+     *  first LEN characters (alphabet indices) of TEXT. */
+    double score(int[] text, int len) {
+        int size = _alphabet.size();
+        int index = 0;
+        double result = 0;
+        for (int i = 0; i < len; i += 1) {
+            index = (index % _top) * size + text[i];
+            if (i >= _n - 1) {
+                result += _logProb[index];
+            }
+        }
+        return result;
+    }
+
+    /** Return the index of coincidence of the first LEN characters of
+     *  TEXT, which are less than COUNTS.length: the chance that two of
+     *  them chosen at random are the same.  COUNTS is scratch space. */
+    static double indexOfCoincidence(int[] text, int len, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < len; i += 1) {
+            counts[text[i]] += 1;
+        }
+        long sum = 0;
+        for (int count : counts) {
+            sum += (long) count * (count - 1);
+        }
+        return len < 2 ? 0 : (double) sum / ((long) len * (len - 1));
+    }
+
+    /** Largest number of N-grams tabulated. */
+    static final int MAX_TABLE = 1 << 24;
+
+    /** Count given to each N-gram in addition to its occurrences. */
+    private static final double UNSEEN = 0.01;
+
+    /** The alphabet of my N-grams. */
+    private final Alphabet _alphabet;
+    /** Length of my sequences. */
+    private final int _n;
+    /** Number of (N-1)-grams. */
+    private final int _top;
+    /** Log probability of each N-gram, indexed by its characters' indices
+     *  as base-size digits. */
+    private final float[] _logProb;
+}
@@ -1,7 +1,8 @@
 package enigma;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -14,66 +15,90 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPH, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  CYCLES is parsed in one pass; errors give
+     *  the position (from 0, in chars) in CYCLES of the offending
+     *  character. */
     Permutation(String cycles, Alphabet alph) {
         _alphabet = alph;
-
-        for (int i = 0; i < cycles.length(); i++) {
-            char c = cycles.charAt(i);
-            if (!(alphabet().contains(c))) {
-                if ((!(c == '(' || c == ')' || Character.isWhitespace(c)))) {
-                    throw new EnigmaException("Not included in Alphabet");
+        _forward = new int[size()];
+        _inverse = new int[size()];
+        Arrays.fill(_forward, UNSEEN);
+        int open = -1, first = -1, last = -1, ch;
+        for (int i = 0; i < cycles.length(); i += Character.charCount(ch)) {
+            ch = cycles.codePointAt(i);
+            if (ch == '(') {
+                if (open >= 0) {
+                    throw error("'(' at position %d inside a cycle", i);
+                }
+                open = i;
+                first = last = -1;
+            } else if (ch == ')') {
+                if (open < 0) {
+                    throw error("unmatched ')' at position %d", i);
+                }
+                if (last >= 0) {
+                    _forward[last] = first;
                 }
+                open = -1;
+            } else if (!Character.isWhitespace(ch)) {
+                int c = alph.toInt(ch);
+                if (c < 0) {
+                    throw error("character '%c' at position %d not in "
+                                + "alphabet", ch, i);
+                } else if (open < 0) {
+                    throw error("character '%c' at position %d not in a "
+                                + "cycle", ch, i);
+                } else if (_forward[c] != UNSEEN) {
+                    throw error("character '%c' at position %d repeated",
+                                ch, i);
+                }
+                _forward[c] = PENDING;
+                if (last >= 0) {
+                    _forward[last] = c;
+                } else {
+                    first = c;
+                }
+                last = c;
             }
         }
-
-        int counter = 0;
-        alphabetCode = new HashMap<Character, Integer>();
-        cycleCode = new HashMap<Character, Character>();
-        rCycleCode = new HashMap<Character, Character>();
-
-        for (int i = 0; i < alphabet().size(); i++) {
-            alphabetCode.put(alphabet().toChar(i), i);
+        if (open >= 0) {
+            throw error("unclosed '(' at position %d", open);
         }
-
-        for (int i = 0; i < cycles.length() - 1; i++) {
-            char currChar = cycles.charAt(i);
-            if (cycles.charAt(i + 1) == ')') {
-                char newChar = cycles.charAt(cycles.indexOf('(', counter) + 1);
-                cycleCode.put(currChar, newChar);
-                counter = i;
-            } else if (alphabetCode.containsKey(currChar)) {
-                char tempChar = cycles.charAt(cycles.indexOf(currChar) + 1);
-                cycleCode.put(currChar, tempChar);
+        for (int p = 0; p < size(); p += 1) {
+            if (_forward[p] == UNSEEN) {
+                _forward[p] = p;
             }
+            _inverse[_forward[p]] = p;
         }
+    }
 
-        String rCycle = "";
-        char ch;
-        for (int i = 0; i < cycles.length(); i++) {
-            ch = cycles.charAt(i);
-            rCycle = ch + rCycle;
+    /** Set this Permutation to the one taking each index P of ALPH to
+     *  FORWARD[P].  FORWARD must contain each index of ALPH exactly once;
+     *  it is copied. */
+    Permutation(int[] forward, Alphabet alph) {
+        _alphabet = alph;
+        if (forward.length != size()) {
+            throw error("permutation table has wrong size");
         }
-        counter = 0;
-        for (int i = 0; i < rCycle.length() - 1; i++) {
-            char currChar = rCycle.charAt(i);
-            if (rCycle.charAt(i + 1) == '(') {
-                char newChar = rCycle.charAt(rCycle.indexOf(')', counter) + 1);
-                rCycleCode.put(currChar, newChar);
-                counter = i;
-            } else if (alphabetCode.containsKey(currChar)) {
-                char tempChar = rCycle.charAt(rCycle.indexOf(currChar) + 1);
-                rCycleCode.put(currChar, tempChar);
+        _forward = forward.clone();
+        _inverse = new int[size()];
+        Arrays.fill(_inverse, -1);
+        for (int p = 0; p < size(); p += 1) {
+            int c = _forward[p];
+            if (c < 0 || c >= size() || _inverse[c] != -1) {
+                throw error("permutation table is not a permutation");
             }
+            _inverse[c] = p;
         }
+    }
 
-        for (int i = 0; i < alphabet().size(); i++) {
-            char a = alphabet().toChar(i);
-            if (!(cycleCode.containsKey(a))) {
-                cycleCode.put(a, a);
-                rCycleCode.put(a, a);
-            }
-        }
+    /** A permutation of ALPH whose tables are FORWARD and INVERSE, which
+     *  are taken as they are, unchecked.  They must be inverses of each
+     *  other, and must not be modified afterwards. */
+    private Permutation(Alphabet alph, int[] forward, int[] inverse) {
+        _alphabet = alph;
+        _forward = forward;
+        _inverse = inverse;
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -93,26 +118,84 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char a = alphabet().toChar(p % alphabet().size());
-        return alphabetCode.get(permute(a));
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char a = alphabet().toChar(c % alphabet().size());
-        return alphabetCode.get(invert(a));
+        return _inverse[wrap(c)];
+    }
+
+    /** Return a table T such that T[P] is permute(P), for P in
+     *  0 .. size() - 1.  T is mine and must not be modified. */
+    int[] forwardTable() {
+        return _forward;
+    }
+
+    /** Return a table T such that T[C] is invert(C).  T is mine and must
+     *  not be modified. */
+    int[] inverseTable() {
+        return _inverse;
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        return cycleCode.get(p);
+        return alphabet().toChar(_forward[index(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        return rCycleCode.get(c);
+        return alphabet().toChar(_inverse[index(c)]);
+    }
+
+    /** Return the index of CH in my alphabet, reporting an error if it
+     *  is not there. */
+    private int index(char ch) {
+        int i = alphabet().toInt(ch);
+        if (i < 0) {
+            throw error("character '%c' not in alphabet", ch);
+        }
+        return i;
+    }
+
+    /** Return a table T such that T[P] is the result of applying this
+     *  permutation to P after rotating the alphabet by K positions, that
+     *  is, wrap(permute(P + K) - K).  Returns null if my alphabet is too
+     *  large for such tables to be kept (see MAX_SHIFTED_SIZE). */
+    int[] shiftedForward(int k) {
+        int[][][] tables = shiftedTables();
+        return tables == null ? null : tables[0][wrap(k)];
+    }
+
+    /** Return a table T such that T[C] is wrap(invert(C + K) - K), or
+     *  null if my alphabet is too large (see MAX_SHIFTED_SIZE). */
+    int[] shiftedInverse(int k) {
+        int[][][] tables = shiftedTables();
+        return tables == null ? null : tables[1][wrap(k)];
+    }
+
+    /** Return the forward and inverse tables for every rotation of
+     *  the alphabet, building them on first use, or null if my alphabet
+     *  has more than MAX_SHIFTED_SIZE characters. */
+    private int[][][] shiftedTables() {
+        int[][][] tables = _shifted;
+        if (tables == null && size() <= MAX_SHIFTED_SIZE) {
+            synchronized (this) {
+                if (_shifted == null) {
+                    int[][][] shifted = new int[2][size()][];
+                    for (int k = 0; k < size(); k += 1) {
+                        Permutation rotated = conjugate(k);
+                        shifted[0][k] = rotated._forward;
+                        shifted[1][k] = rotated._inverse;
+                    }
+                    _shifted = shifted;
+                }
+                tables = _shifted;
+            }
+        }
+        return tables;
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -123,35 +206,132 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (Map.Entry<Character, Character> entry : cycleCode.entrySet()) {
-            if (entry.getKey() == entry.getValue()) {
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == i) {
                 return false;
             }
         }
         return true;
     }
 
+    /* The operations below work on whole tables.  Those that return
+     * Permutations build their tables directly, without rechecking
+     * them; inverse() shares mine. */
+
+    /** Return the permutation that applies me and then OTHER, which must
+     *  be of the same size: P goes to OTHER.permute(permute(P)). */
+    Permutation compose(Permutation other) {
+        if (other.size() != size()) {
+            throw error("permutations of different sizes");
+        }
+        int[] forward = new int[size()], inverse = new int[size()];
+        for (int p = 0; p < forward.length; p += 1) {
+            forward[p] = other._forward[_forward[p]];
+            inverse[p] = _inverse[other._inverse[p]];
+        }
+        return new Permutation(_alphabet, forward, inverse);
+    }
+
+    /** Return my inverse. */
+    Permutation inverse() {
+        return new Permutation(_alphabet, _inverse, _forward);
+    }
 
-    /** @return ALPHABETCODE: the code of alphabet to int. **/
-    HashMap<Character, Integer> getAlphabetCode() {
-        return alphabetCode;
+    /** Return me conjugated by a rotation of the alphabet by K
+     *  positions: P goes to wrap(permute(P + K) - K).  This is the
+     *  substitution a rotor with this wiring performs at offset K (its
+     *  setting less its ring setting). */
+    Permutation conjugate(int k) {
+        int n = size();
+        k = wrap(k);
+        int[] forward = new int[n], inverse = new int[n];
+        for (int p = 0; p < n; p += 1) {
+            int q = p + k >= n ? p + k - n : p + k;
+            int r = _forward[q] - k;
+            forward[p] = r < 0 ? r + n : r;
+            r = _inverse[q] - k;
+            inverse[p] = r < 0 ? r + n : r;
+        }
+        return new Permutation(_alphabet, forward, inverse);
     }
-    /** @return CYCLECODE: the permutation cycles. **/
-    HashMap<Character, Character> getCycleCode() {
-        return cycleCode;
+
+    /** Return me applied N times, where N may be negative (and zero gives
+     *  the identity).  Each cycle is rotated once, so the time does not
+     *  depend on N. */
+    Permutation power(long n) {
+        int size = size();
+        int[] forward = new int[size], inverse = new int[size];
+        int[] cycle = new int[size];
+        Arrays.fill(forward, -1);
+        for (int start = 0; start < size; start += 1) {
+            if (forward[start] >= 0) {
+                continue;
+            }
+            int len = 0;
+            int p = start;
+            do {
+                cycle[len] = p;
+                forward[p] = p;
+                len += 1;
+                p = _forward[p];
+            } while (p != start);
+            int shift = (int) Math.floorMod(n, (long) len);
+            for (int i = 0, j = shift; i < len; i += 1) {
+                forward[cycle[i]] = cycle[j];
+                inverse[cycle[j]] = cycle[i];
+                j = j + 1 == len ? 0 : j + 1;
+            }
+        }
+        return new Permutation(_alphabet, forward, inverse);
     }
-    /** @return RCYCLECODE: the permutation of reversed cycles. **/
-    HashMap<Character, Character> getRCycleCode() {
-        return rCycleCode;
+
+    /** Return my cycles, fixed points included, each as the indices in
+     *  it in the order I visit them, starting from its smallest.  Cycles
+     *  are ordered by their smallest index. */
+    int[][] cycles() {
+        int size = size();
+        int[] order = new int[size];
+        int[] starts = new int[size + 1];
+        boolean[] seen = new boolean[size];
+        int count = 0, len = 0;
+        for (int start = 0; start < size; start += 1) {
+            if (seen[start]) {
+                continue;
+            }
+            starts[count] = len;
+            count += 1;
+            for (int p = start; !seen[p]; p = _forward[p]) {
+                seen[p] = true;
+                order[len] = p;
+                len += 1;
+            }
+        }
+        starts[count] = len;
+        int[][] result = new int[count][];
+        for (int i = 0; i < count; i += 1) {
+            result[i] = Arrays.copyOfRange(order, starts[i], starts[i + 1]);
+        }
+        return result;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
-    /** alphabet code. **/
-    private HashMap<Character, Integer> alphabetCode;
-    /** cycle code. **/
-    private HashMap<Character, Character> cycleCode;
-    /** reverse cycle code. **/
-    private HashMap<Character, Character> rCycleCode;
+    /** Largest alphabet size for which shiftedForward and shiftedInverse
+     *  tabulate every rotation (size() * size() entries each). */
+    static final int MAX_SHIFTED_SIZE = 256;
+
+    /** Marks, while parsing cycles, an index not yet seen. */
+    private static final int UNSEEN = -1;
+    /** Marks, while parsing cycles, an index whose image is not yet
+     *  known. */
+    private static final int PENDING = -2;
+
+    /** Image of each index under this permutation. */
+    private int[] _forward;
+    /** Image of each index under the inverse of this permutation. */
+    private int[] _inverse;
+    /** Lazily built rotations of _forward and _inverse, indexed by
+     *  direction and then by rotation. */
+    private volatile int[][][] _shifted;
 
 }
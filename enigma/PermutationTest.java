@@ -104,4 +104,197 @@ public class PermutationTest {
         assertEquals(p.invert(0), 4);
     }
 
+    @Test
+    public void checkIndexTables() {
+        Alphabet a = new Alphabet("abcdefghij");
+        Permutation p = new Permutation("(ade)(fc)(hig)", a);
+        int[] forward = {3, 1, 5, 4, 0, 2, 7, 8, 6, 9};
+        for (int i = 0; i < forward.length; i += 1) {
+            assertEquals(forward[i], p.permute(i));
+            assertEquals(i, p.invert(forward[i]));
+            assertEquals(forward[i], p.permute(i + a.size()));
+            assertEquals(forward[i], p.permute(i - a.size()));
+        }
+    }
+
+    @Test
+    public void checkCycleSyntax() {
+        perm = new Permutation(" (A B\tC)(DE)() (F)\n(GH) ", UPPER);
+        checkPerm("syntax", UPPER_STRING, "BCAEDFHGIJKLMNOPQRSTUVWXYZ");
+    }
+
+    /** Check that parsing CYCLES over UPPER fails with a message
+     *  containing EXPECTED. */
+    private void checkCycleError(String cycles, String expected) {
+        try {
+            new Permutation(cycles, UPPER);
+            fail("accepted " + cycles);
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().contains(expected));
+        }
+    }
+
+    @Test
+    public void checkCycleErrors() {
+        checkCycleError("(AB) (Cd)", "'d' at position 7 not in alphabet");
+        checkCycleError("(AB) C", "'C' at position 5 not in a cycle");
+        checkCycleError("(ABC) (DBE)", "'B' at position 8 repeated");
+        checkCycleError("(ABA)", "'A' at position 3 repeated");
+        checkCycleError("(AB) (C(D))", "'(' at position 7 inside a cycle");
+        checkCycleError("(AB)) (CD)", "unmatched ')' at position 4");
+        checkCycleError("(AB) (CD", "unclosed '(' at position 5");
+    }
+
+    @Test
+    public void checkLargeAlphabet() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '\u0100'; chars.length() < 40000; c += 1) {
+            chars.append(c);
+        }
+        Alphabet a = new Alphabet(chars.toString());
+        perm = new Permutation("(" + chars.reverse() + ")", a);
+        assertEquals(a.size() - 1, perm.permute(0));
+        assertEquals(0, perm.permute(1));
+        assertEquals(1, perm.invert(0));
+    }
+
+    @Test
+    public void checkSupplementary() {
+        String e0 = "\ud83d\ude00", e1 = "\ud83d\ude01", h = "\u4e00";
+        Alphabet a = new Alphabet("A" + e0 + e1 + h);
+        perm = new Permutation("(" + e0 + "A " + e1 + ")", a);
+        assertEquals(0, perm.permute(1));
+        assertEquals(2, perm.permute(0));
+        assertEquals(1, perm.permute(2));
+        assertEquals(3, perm.permute(3));
+        try {
+            new Permutation("(A" + e0 + ") (" + e0 + ")", a);
+            fail("accepted repeated character");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().contains("position 7 repeated"));
+        }
+    }
+
+    @Test
+    public void checkFromTable() {
+        Alphabet a = new Alphabet("abcdefghij");
+        int[] forward = {3, 1, 5, 4, 0, 2, 7, 8, 6, 9};
+        perm = new Permutation(forward, a);
+        checkPerm("table", "abcdefghij", "dbfeachigj");
+        forward[0] = 0;
+        assertEquals('d', perm.permute('a'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTableNotPermutation() {
+        new Permutation(new int[] {1, 2, 1}, new Alphabet("abc"));
+    }
+
+    @Test
+    public void checkCompose() {
+        Alphabet a = new Alphabet("abcdefghij");
+        Permutation p = new Permutation("(ade)(fc)(hig)", a);
+        Permutation q = new Permutation("(abcdefghij)", a);
+        perm = p.compose(q);
+        checkPerm("compose", "abcdefghij", "ecgfbdijha");
+        perm = p.compose(p.inverse());
+        checkPerm("identity", "abcdefghij", "abcdefghij");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkComposeSizes() {
+        new Permutation("", UPPER).compose(new Permutation("", new Alphabet(
+            "abc")));
+    }
+
+    @Test
+    public void checkInversePermutation() {
+        Alphabet a = new Alphabet("abcdefghij");
+        perm = new Permutation("(ade)(fc)(hig)", a).inverse();
+        checkPerm("inverse", "abcdefghij", "ebfadcighj");
+    }
+
+    @Test
+    public void checkConjugate() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        for (int k = -30; k < 30; k += 7) {
+            Permutation c = p.conjugate(k);
+            for (int i = 0; i < 26; i += 1) {
+                assertEquals(p.wrap(p.permute(i + k) - k), c.permute(i));
+                assertEquals(i, c.invert(c.permute(i)));
+            }
+        }
+        Rotor r = new MovingRotor("I", p, "Q");
+        r.setRing(3);
+        r.set(11);
+        Permutation c = p.conjugate(r.offset());
+        for (int i = 0; i < 26; i += 1) {
+            assertEquals(r.convertForward(i), c.permute(i));
+            assertEquals(r.convertBackward(i), c.invert(i));
+        }
+    }
+
+    @Test
+    public void checkPower() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        Permutation q = new Permutation("", UPPER);
+        for (int n = 0; n < 30; n += 1) {
+            Permutation r = p.power(n);
+            for (int i = 0; i < 26; i += 1) {
+                assertEquals(q.permute(i), r.permute(i));
+                assertEquals(i, r.invert(r.permute(i)));
+            }
+            q = q.compose(p);
+        }
+        Permutation inv = p.power(-1);
+        Permutation far = p.power(1000000000021L);
+        for (int i = 0; i < 26; i += 1) {
+            assertEquals(p.invert(i), inv.permute(i));
+            assertEquals(p.permute(i), far.permute(i));
+        }
+    }
+
+    @Test
+    public void checkCycles() {
+        Alphabet a = new Alphabet("abcdefghij");
+        int[][] cycles =
+            new Permutation("(ade)(fc)(hig)", a).cycles();
+        int[][] expected = { {0, 3, 4}, {1}, {2, 5}, {6, 7, 8}, {9} };
+        assertEquals(expected.length, cycles.length);
+        for (int i = 0; i < expected.length; i += 1) {
+            assertArrayEquals(expected[i], cycles[i]);
+        }
+    }
+
+    @Test
+    public void checkLargeAlgebra() {
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < 60000; i += 1) {
+            chars.append((char) (0x100 + i));
+        }
+        Alphabet a = new Alphabet(chars.toString());
+        int[] forward = new int[a.size()];
+        for (int i = 0; i < forward.length; i += 1) {
+            forward[i] = (int) ((i * 7919L + 13) % forward.length);
+        }
+        Permutation p = new Permutation(forward, a);
+        Permutation q = p.conjugate(12345).compose(p.inverse()).power(-77);
+        int cycled = 0;
+        for (int[] cycle : q.cycles()) {
+            cycled += cycle.length;
+        }
+        assertEquals(a.size(), cycled);
+        for (int i = 0; i < a.size(); i += 1) {
+            assertEquals(i, q.invert(q.permute(i)));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkCharNotInAlphabet() {
+        Permutation p = new Permutation("(AB)", UPPER);
+        p.permute('a');
+    }
+
 }
@@ -9,6 +9,25 @@ class Rotor {
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
+        setNotch(null);
+        updateTables();
+    }
+
+    /** Return a new rotor like me, with my current setting and ring
+     *  setting, that can be moved independently of me. */
+    Rotor copy() {
+        return copyState(new Rotor(_name, _permutation));
+    }
+
+    /** Give R my setting, ring setting, and notches, and return it. */
+    Rotor copyState(Rotor r) {
+        r._notches = _notches;
+        r._notchBits = _notchBits;
+        r._notchPositions = _notchPositions;
+        r.ring = ring;
+        r._setting = _setting;
+        r.updateTables();
+        return r;
     }
 
     /** Return my name. */
@@ -49,31 +68,59 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _setting = posn;
+        updateTables();
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
         _setting = alphabet().toInt(cposn);
+        updateTables();
+    }
+
+    /** Return my setting less my ring setting, modulo size().  My
+     *  conversions depend only on this and my permutation. */
+    int offset() {
+        return _offset;
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int pNew = _permutation.wrap(p + _setting - ring);
-        char a = alphabet().toChar(pNew);
-        char b = _permutation.getCycleCode().get(a);
-        int temp = _permutation.getAlphabetCode().get(b) - _setting + ring;
-        return _permutation.wrap(temp);
+        if (_forwardTable != null) {
+            return _forwardTable[p];
+        }
+        return unshift(_permutation.permute(shift(p)));
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int eNew = _permutation.wrap(e + _setting - ring);
-        char a = alphabet().toChar(eNew);
-        char b = _permutation.getRCycleCode().get(a);
-        int temp = _permutation.getAlphabetCode().get(b) - _setting + ring;
-        return _permutation.wrap(temp);
+        if (_backwardTable != null) {
+            return _backwardTable[e];
+        }
+        return unshift(_permutation.invert(shift(e)));
+    }
+
+    /** Return contact P (in 0..size()-1) as seen by my permutation at
+     *  the current offset. */
+    private int shift(int p) {
+        int q = p + _offset;
+        return q >= size() ? q - size() : q;
+    }
+
+    /** Return the contact my permutation reports as P (in 0..size()-1)
+     *  translated back from the current offset. */
+    private int unshift(int p) {
+        int q = p - _offset;
+        return q < 0 ? q + size() : q;
+    }
+
+    /** Recompute my offset (setting less ring) and, when my permutation
+     *  tabulates its rotations, the tables for that offset. */
+    private void updateTables() {
+        _offset = _permutation.wrap(_setting - ring);
+        _forwardTable = _permutation.shiftedForward(_offset);
+        _backwardTable = _permutation.shiftedInverse(_offset);
     }
 
     /** Returns the positions of the notches, as a string giving the letters
@@ -82,19 +129,55 @@ class Rotor {
         return _notches;
     }
 
+    /** Set my notches to the positions of the letters of A, a string of
+     *  characters of my alphabet, or to none if A is null.  Membership
+     *  is precomputed as a bit set indexed by position, so that
+     *  atNotch does no string work. */
     void setNotch(String a) {
         _notches = a;
+        _notchBits = new long[(size() + Long.SIZE - 1) / Long.SIZE];
+        int count = 0;
+        int ch;
+        for (int i = 0; a != null && i < a.length();
+             i += Character.charCount(ch)) {
+            ch = a.codePointAt(i);
+            int p = alphabet().toInt(ch);
+            if (p >= 0 && !atNotch(p)) {
+                _notchBits[p / Long.SIZE] |= 1L << p;
+                count += 1;
+            }
+        }
+        _notchPositions = new int[count];
+        for (int p = 0, k = 0; k < count; p += 1) {
+            if (atNotch(p)) {
+                _notchPositions[k] = p;
+                k += 1;
+            }
+        }
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (_setting == alphabet().toInt(_notches.charAt(i))) {
-                return true;
-            }
+        return atNotch(_setting);
+    }
+
+    /** Returns true iff setting POSN would allow the rotor to my left to
+     *  advance. */
+    boolean atNotch(int posn) {
+        return (_notchBits[posn / Long.SIZE] & (1L << posn)) != 0;
+    }
+
+    /** Returns the number of times I must advance from setting POSN to
+     *  reach a notch (0 if POSN is at one), or Long.MAX_VALUE if I have
+     *  no notches. */
+    long distanceToNotch(int posn) {
+        long result = Long.MAX_VALUE;
+        for (int p : _notchPositions) {
+            int d = p - posn;
+            result = Math.min(result, d < 0 ? d + size() : d);
         }
-        return false;
+        return result;
     }
 
     /** Advance me one position, if possible. By default, does nothing. */
@@ -103,6 +186,7 @@ class Rotor {
 
     void setRing(int i) {
         ring = i;
+        updateTables();
     }
 
 
@@ -120,7 +204,17 @@ class Rotor {
     private int _setting;
     /** notch of rotor. */
     private String _notches;
+    /** Bit P is set iff position P is a notch. */
+    private long[] _notchBits;
+    /** The positions of my notches, in increasing order. */
+    private int[] _notchPositions;
     /** ring setting in terms of integers. */
     private int ring;
+    /** My setting less my ring setting, modulo size(). */
+    private int _offset;
+    /** My permutation as seen at _offset, or null if not tabulated. */
+    private int[] _forwardTable;
+    /** The inverse of my permutation at _offset, or null. */
+    private int[] _backwardTable;
 
 }
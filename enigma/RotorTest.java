@@ -12,4 +12,48 @@ public class RotorTest {
         assertEquals(r.convertForward(0), 2);
         assertEquals(r.convertBackward(0), 1);
     }
+
+    /** Check that R converts as PERM would after rotating by SETTING
+     *  less RING, in both directions. */
+    private void checkShifted(Rotor r, Permutation perm,
+                              int setting, int ring) {
+        r.set(setting);
+        r.setRing(ring);
+        int n = perm.size();
+        for (int p = 0; p < n; p += 1) {
+            int e = perm.wrap(perm.permute(p + setting - ring)
+                              - setting + ring);
+            assertEquals(e, r.convertForward(p));
+            assertEquals(p, r.convertBackward(e));
+        }
+    }
+
+    @Test
+    public void tabulatedOffsets() {
+        Alphabet a = new Alphabet("ABCDEF");
+        Permutation p = new Permutation("(ACB)(DE)", a);
+        Rotor r = new Rotor("a", p);
+        for (int s = 0; s < a.size(); s += 1) {
+            for (int ring = 0; ring < a.size(); ring += 1) {
+                checkShifted(r, p, s, ring);
+            }
+        }
+    }
+
+    @Test
+    public void untabulatedOffsets() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '\u0100';
+             chars.length() <= Permutation.MAX_SHIFTED_SIZE; c += 1) {
+            chars.append(c);
+        }
+        Alphabet a = new Alphabet(chars.toString());
+        Permutation p = new Permutation("(" + chars.substring(3, 40) + ")"
+                + "(" + chars.substring(100, 103) + ")", a);
+        assertNull(p.shiftedForward(0));
+        Rotor r = new Rotor("big", p);
+        checkShifted(r, p, 0, 0);
+        checkShifted(r, p, 7, 200);
+        checkShifted(r, p, a.size() - 1, 1);
+    }
 }
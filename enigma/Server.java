@@ -0,0 +1,116 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/** A long-running server that converts jobs for one machine
+ *  configuration over connections to a loopback port.  A job is the
+ *  contents of one connection: settings lines and messages in the same
+ *  format as Main's input, ended by the client shutting down its side
+ *  for output.  The converted messages are streamed back as they are
+ *  produced, followed by a line "Error: MESSAGE" if the job was in error,
+ *  and the connection is then closed.  Each connection is handled on its
+ *  own (virtual, where the runtime has them) thread with its own Machine,
+ *  all sharing one MachineSpec.
+ *  @author Michelle
+ */
+class Server implements Closeable {
+
+    /** A server for jobs on machines described by SPEC, listening on
+     *  the loopback interface at PORT, or on any free port if PORT is
+     *  0. */
+    Server(MachineSpec spec, int port) throws IOException {
+        _spec = spec;
+        _listener = ServerSocketChannel.open();
+        _listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                             port));
+        _workers = newWorkers();
+    }
+
+    /** Return the port on which I listen. */
+    int port() {
+        return ((InetSocketAddress) _listener.socket().getLocalSocketAddress())
+            .getPort();
+    }
+
+    /** Accept and handle connections until I am closed. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                SocketChannel client = _listener.accept();
+                _workers.execute(() -> handle(client));
+            }
+        } catch (ClosedChannelException excp) {
+            return;
+        }
+    }
+
+    /** Stop accepting connections, and wait briefly for jobs in progress
+     *  to finish. */
+    @Override
+    public void close() throws IOException {
+        _listener.close();
+        _workers.shutdown();
+        try {
+            _workers.awaitTermination(JOB_GRACE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Run the job arriving on CLIENT, and close it. */
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            ChannelWriter out = new ChannelWriter(channel);
+            try {
+                new StreamProcessor(new Machine(_spec), Main::setUp,
+                                    new ChannelReader(channel), out)
+                    .process();
+            } catch (RuntimeException excp) {
+                String report =
+                    String.format("Error: %s%n", excp.getMessage());
+                for (int i = 0; i < report.length(); i += 1) {
+                    out.write(report.charAt(i));
+                }
+                out.flush();
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Return an executor that starts a virtual thread per task if this
+     *  runtime supports them, and otherwise a pool of platform threads.
+     *  The virtual-thread factory is looked up reflectively so that the
+     *  package still compiles and runs on runtimes without it. */
+    private static ExecutorService newWorkers() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException excp) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Seconds that close waits for jobs in progress. */
+    private static final int JOB_GRACE_SECONDS = 5;
+
+    /** Description of the machine for every job. */
+    private final MachineSpec _spec;
+    /** The socket on which I accept connections. */
+    private final ServerSocketChannel _listener;
+    /** Runs the jobs. */
+    private final ExecutorService _workers;
+}
@@ -0,0 +1,127 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Server class.  The server
+ *  listens on the loopback interface only.
+ *  @author Michelle
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    private static final String NL = System.lineSeparator();
+
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n";
+
+    @Before
+    public void start() throws IOException {
+        _server = new Server(
+            TestUtils.navalSpec("B", "Beta", "III", "IV", "I"), 0);
+        _serving = new Thread(() -> {
+            try {
+                _server.serve();
+            } catch (IOException excp) {
+                return;
+            }
+        });
+        _serving.start();
+    }
+
+    @After
+    public void stop() throws Exception {
+        _server.close();
+        _serving.join();
+    }
+
+    /** Return the server's reply to JOB. */
+    private String run(String job) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(
+                 new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                       _server.port()))) {
+            ByteBuffer request =
+                ByteBuffer.wrap(job.getBytes(StandardCharsets.US_ASCII));
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            channel.shutdownOutput();
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            ByteBuffer buf = ByteBuffer.allocate(256);
+            while (channel.read(buf) >= 0) {
+                reply.write(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+            return new String(reply.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Test
+    public void testJob() throws IOException {
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + NL,
+                     run(SETTINGS + "FROM HIS SHOULDER HIAWATHA\n"));
+    }
+
+    @Test
+    public void testSessionsIndependent() throws IOException {
+        run(SETTINGS + "FROM HIS SHOULDER\n");
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + NL,
+                     run(SETTINGS + "FROM HIS SHOULDER HIAWATHA\n"));
+    }
+
+    @Test
+    public void testConcurrentJobs() throws Exception {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 2000; i += 1) {
+            msg.append((char) ('A' + (i * 7) % 26));
+        }
+        final String job = SETTINGS + msg + "\n";
+        final String expected = run(job);
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> replies = new ArrayList<>();
+            for (int i = 0; i < 64; i += 1) {
+                replies.add(clients.submit((Callable<String>) () -> run(job)));
+            }
+            for (Future<String> reply : replies) {
+                assertEquals(expected, reply.get());
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void testBadJob() throws IOException {
+        String reply = run("* B Beta III IV X AXLE\nHELLO\n");
+        assertTrue(reply, reply.startsWith("Error: "));
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + NL,
+                     run(SETTINGS + "FROM HIS SHOULDER HIAWATHA\n"));
+    }
+
+    /** The server under test. */
+    private Server _server;
+    /** Thread running _server. */
+    private Thread _serving;
+}
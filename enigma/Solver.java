@@ -0,0 +1,591 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only search for machine settings, after Gillogly and
+ *  Weierud and Sullivan.  A Solver
+ *  <ol>
+ *  <li> deciphers the ciphertext at every rotor order and position, with
+ *       ring settings 0 and no plugboard, keeping the candidates whose
+ *       decryptions have the highest index of coincidence;
+ *  <li> for each candidate, tries every ring setting of the two rightmost
+ *       moving rotors (adjusting their settings to keep their offsets),
+ *       keeping the best by index of coincidence; and
+ *  <li> hill-climbs the plugboard of each candidate, from several
+ *       starting plugboards, first by index of coincidence and then by
+ *       N-gram statistics, if it has any.
+ *  </ol>
+ *  Each stage is divided among the threads of a pool.  For the
+ *  plugboard, the rotors' substitution at each position is tabulated
+ *  once, so that a trial decryption and its score are array lookups
+ *  that allocate nothing.
+ *  @author Michelle
+ */
+class Solver {
+
+    /** A Solver for CIPHERTEXT, which contains only characters of the
+     *  alphabet of SPEC, for machines described by SPEC, scoring
+     *  plugboards finally by NGRAMS, or by index of coincidence if
+     *  NGRAMS is null. */
+    Solver(MachineSpec spec, String ciphertext, NGrams ngrams) {
+        if (spec.numPawls() < 1) {
+            throw error("solving needs at least one moving rotor");
+        }
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        _ngrams = ngrams;
+        _cipher = new int[ciphertext.length()];
+        for (int i = 0; i < _cipher.length; i += 1) {
+            _cipher[i] = _alphabet.toInt(ciphertext.charAt(i));
+            if (_cipher[i] < 0) {
+                throw error("character '%c' not in alphabet",
+                            ciphertext.charAt(i));
+            }
+        }
+    }
+
+    /** Keep the best N candidates from the first stage (default
+     *  DEFAULT_CANDIDATES). */
+    void setCandidates(int n) {
+        _candidates = n;
+    }
+
+    /** Climb from N starting plugboards per candidate: the empty one and
+     *  N-1 random ones (default DEFAULT_RESTARTS). */
+    void setRestarts(int n) {
+        _restarts = n;
+    }
+
+    /** Generate the random starting plugboards from SEED. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Return the number of trial decryptions done so far. */
+    long trials() {
+        return _trials;
+    }
+
+    /** A settings line and its score. */
+    static final class Result {
+
+        /** A result for settings line LINE, scoring SCORE. */
+        Result(String line, double score) {
+            _line = line;
+            _score = score;
+        }
+
+        /** Return my settings line. */
+        String line() {
+            return _line;
+        }
+
+        /** Return my score: the N-gram score of the decryption if there
+         *  are N-gram statistics, else its index of coincidence. */
+        double score() {
+            return _score;
+        }
+
+        /** Settings line. */
+        private final String _line;
+        /** Score. */
+        private final double _score;
+    }
+
+    /** Return the distinct settings lines found for rotor orders in
+     *  ORDERS (each naming the rotors for every slot, reflector first),
+     *  best first, using the threads of POOL. */
+    List<Result> solve(ForkJoinPool pool, List<String[]> orders) {
+        for (String[] order : orders) {
+            if (order.length != _spec.numRotors()) {
+                throw error("wrong number of rotors in %s",
+                            String.join(" ", order));
+            }
+        }
+        List<Candidate> candidates = positions(pool, orders);
+        Candidate[] ringed = candidates.toArray(new Candidate[0]);
+        long[] trials = new long[ringed.length];
+        pool.invoke(new Split(ringed.length, i -> {
+            trials[i] = ringed[i].climbRings();
+            ringed[i]._scramblers = ringed[i].scramblers();
+        }));
+        Result[] results = new Result[ringed.length * _restarts];
+        long[] plugTrials = new long[results.length];
+        pool.invoke(new Split(results.length, i -> {
+            Candidate c = ringed[i / _restarts];
+            int restart = i % _restarts;
+            Climb climb = new Climb(c, new Random(_seed + i));
+            results[i] = climb.run(restart == 0);
+            plugTrials[i] = climb._trials;
+        }));
+        for (long t : trials) {
+            _trials += t;
+        }
+        for (long t : plugTrials) {
+            _trials += t;
+        }
+        List<Result> best = new ArrayList<Result>();
+        Arrays.sort(results, (a, b) -> Double.compare(b._score, a._score));
+        for (Result r : results) {
+            boolean seen = false;
+            for (Result s : best) {
+                seen |= s._line.equals(r._line);
+            }
+            if (!seen) {
+                best.add(r);
+            }
+        }
+        return best;
+    }
+
+    /** Return the best candidates, by index of coincidence with ring
+     *  settings 0 and no plugboard, of all positions of all of
+     *  ORDERS, searching on POOL. */
+    private List<Candidate> positions(ForkJoinPool pool,
+                                      List<String[]> orders) {
+        int split = _spec.numRotors() > 2 ? _size : 1;
+        int items = orders.size() * split;
+        @SuppressWarnings("unchecked")
+        List<Candidate>[] found = new List[items];
+        long[] trials = new long[items];
+        pool.invoke(new Split(items, i -> {
+            String[] order = orders.get(i / split);
+            Machine m = new Machine(_spec);
+            m.insertRotors(order);
+            int n = order.length;
+            int[] settings = new int[n];
+            if (n > 2) {
+                settings[1] = i % split;
+            }
+            int[] plain = new int[_cipher.length];
+            int[] counts = new int[_size];
+            List<Candidate> best = new ArrayList<Candidate>();
+            long count = 0;
+            do {
+                for (int j = 1; j < n; j += 1) {
+                    m.getRotor(j).set(settings[j]);
+                }
+                m.convert(_cipher, 0, _cipher.length, plain, 0);
+                count += 1;
+                double score =
+                    NGrams.indexOfCoincidence(plain, plain.length, counts);
+                if (best.size() < _candidates
+                    || score > best.get(best.size() - 1)._score) {
+                    keep(best, new Candidate(order, settings.clone(),
+                                             score));
+                }
+            } while (advance(settings, n > 2 ? 2 : 1));
+            found[i] = best;
+            trials[i] = count;
+        }));
+        List<Candidate> best = new ArrayList<Candidate>();
+        for (int i = 0; i < items; i += 1) {
+            _trials += trials[i];
+            for (Candidate c : found[i]) {
+                if (best.size() < _candidates
+                    || c._score > best.get(best.size() - 1)._score) {
+                    keep(best, c);
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Add C to BEST, which is in decreasing order of score, keeping it
+     *  so and no longer than the number of candidates. */
+    private void keep(List<Candidate> best, Candidate c) {
+        int k = best.size();
+        while (k > 0 && best.get(k - 1)._score < c._score) {
+            k -= 1;
+        }
+        best.add(k, c);
+        if (best.size() > _candidates) {
+            best.remove(best.size() - 1);
+        }
+    }
+
+    /** Move SETTINGS[FROM ..] to the next combination, rightmost fastest,
+     *  returning false when all have been tried. */
+    private boolean advance(int[] settings, int from) {
+        for (int j = settings.length - 1; j >= from; j -= 1) {
+            settings[j] += 1;
+            if (settings[j] < _size) {
+                return true;
+            }
+            settings[j] = 0;
+        }
+        return false;
+    }
+
+    /** Runs a function on each of a range of indices, dividing them among
+     *  the threads of a pool. */
+    private static class Split extends RecursiveAction {
+
+        /** A task that calls BODY on each of 0 .. N-1. */
+        Split(int n, IntConsumer body) {
+            this(0, n, body);
+        }
+
+        /** A task that calls BODY on each of LO .. HI-1. */
+        private Split(int lo, int hi, IntConsumer body) {
+            _lo = lo;
+            _hi = hi;
+            _body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo == 1) {
+                _body.accept(_lo);
+            } else if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Split(_lo, mid, _body),
+                          new Split(mid, _hi, _body));
+            }
+        }
+
+        /** Range of indices. */
+        private final int _lo, _hi;
+        /** Function to run. */
+        private final IntConsumer _body;
+    }
+
+    /** A rotor order with settings and ring settings. */
+    private final class Candidate {
+
+        /** A candidate with ORDER at SETTINGS, with ring settings 0,
+         *  scoring SCORE. */
+        Candidate(String[] order, int[] settings, double score) {
+            _order = order;
+            _settings = settings;
+            _rings = new int[settings.length];
+            _score = score;
+        }
+
+        /** Return a machine with my rotors, settings, and ring settings,
+         *  and no plugboard. */
+        Machine machine() {
+            Machine m = new Machine(_spec);
+            m.insertRotors(_order);
+            for (int j = 1; j < _order.length; j += 1) {
+                m.getRotor(j).setRing(_rings[j]);
+                m.getRotor(j).set(_settings[j]);
+            }
+            return m;
+        }
+
+        /** Choose the ring settings of my two rightmost moving rotors,
+         *  rightmost first, that maximize the index of coincidence of the
+         *  decryption, moving their settings with their rings so that
+         *  their offsets stay the same.  Return the number of trial
+         *  decryptions. */
+        long climbRings() {
+            int[] plain = new int[_cipher.length];
+            int[] counts = new int[_size];
+            long count = 0;
+            int n = _order.length;
+            for (int j = n - 1; j >= Math.max(1, n - 2); j -= 1) {
+                if (!_spec.newRotor(_order[j]).rotates()) {
+                    break;
+                }
+                int offset = _settings[j] - _rings[j];
+                int bestRing = _rings[j];
+                for (int ring = 0; ring < _size; ring += 1) {
+                    _rings[j] = ring;
+                    _settings[j] = Math.floorMod(offset + ring, _size);
+                    machine().convert(_cipher, 0, _cipher.length, plain, 0);
+                    count += 1;
+                    double score =
+                        NGrams.indexOfCoincidence(plain, plain.length,
+                                                  counts);
+                    if (score > _score) {
+                        _score = score;
+                        bestRing = ring;
+                    }
+                }
+                _rings[j] = bestRing;
+                _settings[j] = Math.floorMod(offset + bestRing, _size);
+            }
+            return count;
+        }
+
+        /** Return the table S such that S[K * size + C] is the image
+         *  of C without the plugboard at position K of the message. */
+        int[] scramblers() {
+            int len = _cipher.length;
+            int[] result = new int[len * _size];
+            int[] column = new int[len];
+            int[] image = new int[len];
+            for (int c = 0; c < _size; c += 1) {
+                Arrays.fill(column, c);
+                machine().convert(column, 0, len, image, 0);
+                for (int k = 0; k < len; k += 1) {
+                    result[k * _size + c] = image[k];
+                }
+            }
+            return result;
+        }
+
+        /** Return my settings line with plugboard PLUG, an involution on
+         *  alphabet indices. */
+        String line(int[] plug) {
+            StringBuilder line = new StringBuilder("*");
+            for (String name : _order) {
+                line.append(' ').append(name);
+            }
+            line.append(' ');
+            boolean ringed = false;
+            for (int j = 1; j < _order.length; j += 1) {
+                line.append(_alphabet.toChar(_settings[j]));
+                ringed |= _rings[j] != 0;
+            }
+            if (ringed) {
+                line.append(' ');
+                for (int j = 1; j < _order.length; j += 1) {
+                    line.append(_alphabet.toChar(_rings[j]));
+                }
+            }
+            for (int c = 0; c < _size; c += 1) {
+                if (plug[c] > c) {
+                    line.append(" (").append(_alphabet.toChar(c))
+                        .append(_alphabet.toChar(plug[c])).append(')');
+                }
+            }
+            return line.toString();
+        }
+
+        /** Rotor names, reflector first. */
+        private final String[] _order;
+        /** Rotor settings (index 0 unused). */
+        private final int[] _settings;
+        /** Ring settings (index 0 unused). */
+        private final int[] _rings;
+        /** Index of coincidence of the decryption without plugboard. */
+        private double _score;
+        /** My scramblers(), once my ring settings are chosen. */
+        private int[] _scramblers;
+    }
+
+    /** A hill-climb of the plugboard of one candidate. */
+    private final class Climb {
+
+        /** A climb for CANDIDATE, choosing the starting plugboard and the
+         *  order of trials with RANDOM. */
+        Climb(Candidate candidate, Random random) {
+            _candidate = candidate;
+            _random = random;
+            _scramblers = candidate._scramblers;
+            _plug = new int[_size];
+            _plain = new int[_cipher.length];
+            _counts = new int[_size];
+        }
+
+        /** Climb from the empty plugboard if EMPTY, else from a random
+         *  one, and return the result. */
+        Result run(boolean empty) {
+            for (int c = 0; c < _size; c += 1) {
+                _plug[c] = c;
+            }
+            if (!empty) {
+                for (int k = 0; k < _size / 4; k += 1) {
+                    int a = _random.nextInt(_size), b = _random.nextInt(_size);
+                    if (_plug[a] == a && _plug[b] == b) {
+                        _plug[a] = b;
+                        _plug[b] = a;
+                    }
+                }
+            }
+            climb(false);
+            double score = climb(_ngrams != null);
+            return new Result(_candidate.line(_plug), score);
+        }
+
+        /** Improve _plug by connecting, disconnecting, and reconnecting
+         *  pairs of characters until no single change helps, scoring by
+         *  N-grams if NGRAMS, else by index of coincidence.  Return the
+         *  final score. */
+        private double climb(boolean ngrams) {
+            int[] order = new int[_size];
+            for (int c = 0; c < _size; c += 1) {
+                order[c] = c;
+            }
+            double best = score(ngrams);
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                shuffle(order);
+                for (int i = 0; i < _size; i += 1) {
+                    for (int j = i + 1; j < _size; j += 1) {
+                        int a = order[i], b = order[j];
+                        int pa = _plug[a], pb = _plug[b];
+                        _plug[pa] = pa;
+                        _plug[pb] = pb;
+                        if (pa != b) {
+                            _plug[a] = b;
+                            _plug[b] = a;
+                        }
+                        double score = score(ngrams);
+                        if (score > best) {
+                            best = score;
+                            improved = true;
+                        } else {
+                            _plug[a] = pa;
+                            _plug[pa] = a;
+                            _plug[b] = pb;
+                            _plug[pb] = b;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        /** Put ORDER in a random order. */
+        private void shuffle(int[] order) {
+            for (int i = order.length - 1; i > 0; i -= 1) {
+                int k = _random.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[k];
+                order[k] = t;
+            }
+        }
+
+        /** Return the score of the decryption with plugboard _plug: by
+         *  N-grams if NGRAMS, else by index of coincidence. */
+        private double score(boolean ngrams) {
+            int[] plug = _plug, scramblers = _scramblers, plain = _plain;
+            for (int k = 0, base = 0; k < plain.length; k += 1) {
+                plain[k] = plug[scramblers[base + plug[_cipher[k]]]];
+                base += _size;
+            }
+            _trials += 1;
+            if (ngrams) {
+                return _ngrams.score(plain, plain.length);
+            }
+            return NGrams.indexOfCoincidence(plain, plain.length, _counts);
+        }
+
+        /** The candidate whose plugboard I climb. */
+        private final Candidate _candidate;
+        /** Source of starting plugboards and trial orders. */
+        private final Random _random;
+        /** Substitution without plugboard at each position (see
+         *  Candidate.scramblers). */
+        private final int[] _scramblers;
+        /** Current plugboard: the partner of each character. */
+        private final int[] _plug;
+        /** Scratch decryption. */
+        private final int[] _plain;
+        /** Scratch character counts. */
+        private final int[] _counts;
+        /** Trial decryptions done. */
+        private long _trials;
+    }
+
+    /** Print the best settings lines, best first, for the
+     *  ciphertext in the file ARGS[1] (the standard input if absent) for
+     *  the machine configured by the file ARGS[0].  Options:
+     *  --order="ROTOR ..." limits the search to one rotor order;
+     *  --corpus=FILE gives a sample of the language for trigram scoring;
+     *  --candidates=N and --restarts=N are as for setCandidates and
+     *  setRestarts; and --top=N limits the number of lines printed
+     *  (default 5).  The throughput, in trial decryptions per second,
+     *  goes to the standard error. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--order=(.+) --corpus=(.+) "
+                                + "--candidates=(\\d+) --restarts=(\\d+) "
+                                + "--top=(\\d+) --=(.*){1,2}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Solver [--order=ROTORS] "
+                            + "[--corpus=FILE] [--candidates=N] "
+                            + "[--restarts=N] [--top=N] CONFIG [INPUT]");
+            }
+            List<String> files = options.get("--");
+            MachineSpec spec = Main.readConfig(files.get(0));
+            StringBuilder ciphertext = new StringBuilder();
+            Scanner input = files.size() > 1 ? Main.getInput(files.get(1))
+                : new Scanner(System.in);
+            while (input.hasNext()) {
+                ciphertext.append(input.next());
+            }
+            NGrams ngrams = null;
+            if (options.contains("--corpus")) {
+                ngrams = NGrams.read(spec.alphabet(), 3,
+                                     options.getFirst("--corpus"));
+            }
+            Solver solver = new Solver(spec, ciphertext.toString(), ngrams);
+            if (options.contains("--candidates")) {
+                solver.setCandidates(
+                    Integer.parseInt(options.getFirst("--candidates")));
+            }
+            if (options.contains("--restarts")) {
+                solver.setRestarts(
+                    Integer.parseInt(options.getFirst("--restarts")));
+            }
+            List<String[]> orders;
+            if (options.contains("--order")) {
+                orders = Collections.singletonList(
+                    options.getFirst("--order").trim().split("\\s+"));
+            } else {
+                orders = Bombe.rotorOrders(spec);
+            }
+            int top = options.contains("--top")
+                ? Integer.parseInt(options.getFirst("--top")) : 5;
+
+            long start = System.nanoTime();
+            List<Result> results =
+                solver.solve(ForkJoinPool.commonPool(), orders);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            for (Result r : results.subList(0, Math.min(top,
+                                                        results.size()))) {
+                System.out.println(r.line());
+            }
+            System.err.printf("%d trial decryptions in %.2f s: %.0f per "
+                              + "second%n", solver.trials(), seconds,
+                              solver.trials() / seconds);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Default for setCandidates. */
+    static final int DEFAULT_CANDIDATES = 32;
+    /** Default for setRestarts. */
+    static final int DEFAULT_RESTARTS = 4;
+
+    /** Description of the machines searched. */
+    private final MachineSpec _spec;
+    /** Their alphabet. */
+    private final Alphabet _alphabet;
+    /** Size of _alphabet. */
+    private final int _size;
+    /** Statistics for the final score, or null. */
+    private final NGrams _ngrams;
+    /** The ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+    /** Number of candidates kept from the first stage. */
+    private int _candidates = DEFAULT_CANDIDATES;
+    /** Starting plugboards per candidate. */
+    private int _restarts = DEFAULT_RESTARTS;
+    /** Seed for random starting plugboards. */
+    private long _seed;
+    /** Trial decryptions done. */
+    private long _trials;
+}
@@ -0,0 +1,134 @@
+package enigma;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Solver and NGrams classes.
+ *  @author Michelle
+ */
+public class SolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** A sample of English. */
+    private static final String TEXT =
+        "The river had risen in the night, and by morning the lower "
+        + "fields were under water. The farmers who had lived along its "
+        + "banks for generations knew the signs well enough: the heavy "
+        + "clouds that gathered over the hills to the west, the sudden "
+        + "stillness of the birds, the smell of rain on the wind long "
+        + "before the first drops fell. They moved their animals to "
+        + "higher ground, carried what they could into the lofts of their "
+        + "barns, and waited. There was nothing else to be done. The "
+        + "water would come, and then it would go, and afterwards they "
+        + "would begin again as their fathers and grandfathers had done "
+        + "before them. "
+        + "In the town the story was different. The new houses that had "
+        + "been built near the station in the last ten years stood on "
+        + "land that had once been marsh, and their owners had been told "
+        + "that the river would never reach them. Now they stood at their "
+        + "windows and watched the brown water creep across the gardens "
+        + "and into the streets. Some of them telephoned the council, "
+        + "demanding to know what was being done; others simply packed "
+        + "their cars and drove away to stay with relatives until it was "
+        + "over. By the afternoon the main road was closed, and the only "
+        + "way in or out of the town was by the old bridge at the "
+        + "northern end, which had stood for three hundred years and "
+        + "showed no sign of giving way now. "
+        + "The schoolmaster, who was also the keeper of the parish "
+        + "records, spent the day in the church tower with a lamp and a "
+        + "notebook, writing down everything he could see. He had done "
+        + "the same thing during the great flood of his childhood, when "
+        + "he had been sent up the tower by the old vicar to watch for "
+        + "boats, and he still had the notebook he had kept then. "
+        + "Comparing the two, he could see that the water this time was "
+        + "higher by nearly a foot, and he wondered what that meant for "
+        + "the years to come. When the light failed he came down, wrote a "
+        + "short account for the newspaper, and went home to his supper, "
+        + "where his wife asked him whether it had been worth it, and he "
+        + "said that he thought it had. "
+        + "The next morning the sky was clear and the water had already "
+        + "begun to fall. People came out of their houses to look at the "
+        + "damage, and found that it was less than they had feared in "
+        + "some places and far worse in others. The bakery on the corner "
+        + "had lost everything, but the butcher next door, whose floor "
+        + "was two steps higher, had lost nothing at all. Such is the way "
+        + "of floods, the schoolmaster wrote in his notebook that "
+        + "evening, and of most other misfortunes too: they fall "
+        + "unequally, and the difference between ruin and escape is often "
+        + "no more than a step or two. ";
+
+    /** Return the letters of TEXT, in upper case. */
+    private static String letters(String text) {
+        return text.toUpperCase().replaceAll("[^A-Z]", "");
+    }
+
+    /** A four-slot machine description with the naval rotors B, I, III,
+     *  and IV. */
+    private static final MachineSpec SPEC =
+        TestUtils.navalSpec("B", "I", "III", "IV");
+
+    @Test
+    public void testIndexOfCoincidence() {
+        int[] counts = new int[26];
+        assertEquals(1.0 / 3, NGrams.indexOfCoincidence(
+                         new int[] { 0, 0, 1, 1 }, 4, counts), 1e-9);
+        assertEquals(0, NGrams.indexOfCoincidence(
+                         new int[] { 0, 1, 2, 3, 9 }, 4, counts), 1e-9);
+    }
+
+    @Test
+    public void testNGrams() {
+        NGrams ngrams = new NGrams(TestUtils.UPPER, 3, TEXT);
+        assertEquals(3, ngrams.n());
+        int[] english = new int[12], noise = new int[12];
+        String word = "THEREANDTHEN";
+        for (int i = 0; i < 12; i += 1) {
+            english[i] = TestUtils.UPPER.toInt(word.charAt(i));
+            noise[i] = (i * 7 + 3) % 26;
+        }
+        assertTrue(ngrams.score(english, 12) > ngrams.score(noise, 12));
+        assertEquals(ngrams.score(english, 2), 0, 1e-9);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNGramsEmptyCorpus() {
+        new NGrams(TestUtils.UPPER, 3, "a b c");
+    }
+
+    @Test
+    public void testSolve() {
+        String all = letters(TEXT);
+        String plain = all.substring(all.length() - 400);
+        String settings = "* B III IV I KDM AAC (AQ) (WE) (RT) (ZU) (IO) (PL)";
+        String cipher = TestUtils.encipher(SPEC, settings, plain);
+        Solver solver = new Solver(SPEC, cipher,
+                new NGrams(TestUtils.UPPER, 3,
+                           TEXT.substring(0, TEXT.length() * 3 / 5)));
+        solver.setCandidates(16);
+        solver.setRestarts(2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<Solver.Result> results;
+        try {
+            results = solver.solve(pool, Collections.singletonList(
+                    new String[] { "B", "III", "IV", "I" }));
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(solver.trials() >= 26 * 26 * 26);
+        assertEquals(plain, TestUtils.encipher(SPEC, results.get(0).line(),
+                                               cipher));
+        for (int i = 1; i < results.size(); i += 1) {
+            assertTrue(results.get(i).score() <= results.get(0).score());
+        }
+    }
+
+}
@@ -0,0 +1,451 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import static enigma.EnigmaException.*;
+
+/** Applies a machine to a stream of settings lines and messages, with
+ *  the same input format and output as Main.process, but reading and
+ *  writing through fixed-size buffers.  Message lines are converted and
+ *  written as they are read, a buffer at a time through the bulk
+ *  conversion of Machine, so memory use does not depend on their
+ *  length.
+ *  @author Michelle
+ */
+class StreamProcessor {
+
+    /** A processor that reads from IN and writes to OUT, converting
+     *  with MACHINE, which it sets up for each settings line by calling
+     *  SETUP on MACHINE and the line. */
+    StreamProcessor(Machine machine, BiConsumer<Machine, String> setUp,
+                    ChannelReader in, ChannelWriter out) {
+        _machine = machine;
+        _setUp = setUp;
+        _in = in;
+        _out = out;
+    }
+
+    /** Record my work in METRICS from now on, or stop recording it if
+     *  METRICS is null.  When converting serially, writing converted
+     *  characters into the output buffer counts as conversion; only
+     *  the final flush counts as output. */
+    void setMetrics(Metrics metrics) {
+        _metrics = metrics;
+    }
+
+    /** Process all of my input, flushing my output when done (even if
+     *  an error is reported). */
+    void process() throws IOException {
+        try {
+            processLines();
+        } finally {
+            flush();
+        }
+    }
+
+    /** Flush my output, timing it as output if recording metrics. */
+    private void flush() throws IOException {
+        long start = System.nanoTime();
+        _out.flush();
+        if (_metrics != null) {
+            _metrics.output(start);
+        }
+    }
+
+    /** Process all of my input as process() does, but converting the
+     *  messages of each settings block on POOL, with a fresh machine
+     *  like mine for each block.  At most AHEAD blocks, each held in
+     *  memory, are read ahead of those written.  Output is in the order
+     *  of the input, and stops where process() would stop at the first
+     *  error. */
+    void process(ExecutorService pool, int ahead) throws IOException {
+        _pool = pool;
+        _ahead = Math.max(1, ahead);
+        _pending = new ArrayDeque<Future<Block>>();
+        try {
+            try {
+                processLines();
+            } catch (IOException | RuntimeException excp) {
+                dispatch();
+                drain(0);
+                throw excp;
+            }
+            dispatch();
+            drain(0);
+        } finally {
+            for (Future<Block> block : _pending) {
+                block.cancel(true);
+            }
+            _pool = null;
+            flush();
+        }
+    }
+
+    /** Process my input line by line.  As with Scanner in Main.process,
+     *  blank lines are only dealt with once the next token is known:
+     *  before a settings line they are copied to the output, before a
+     *  message line they are empty messages, and at the end of input
+     *  they are dropped. */
+    private void processLines() throws IOException {
+        boolean configured = false;
+        long blankLines = 0;
+        boolean badBlank = false, spaceOnly = false;
+        while (true) {
+            boolean tabs = false;
+            int lead = 0;
+            int c = _in.read();
+            while (c != -1 && !isLineEnd(c) && Character.isWhitespace(c)) {
+                tabs |= c != ' ';
+                lead += 1;
+                c = _in.read();
+            }
+            if (c == -1) {
+                return;
+            } else if (isLineEnd(c)) {
+                skipLineEnd(c);
+                blankLines += 1;
+                spaceOnly |= lead > 0;
+                badBlank |= tabs;
+            } else if (c == '*' && isTokenEnd(_in.peek())) {
+                if (spaceOnly || badBlank) {
+                    throw error("wrong input formatting");
+                }
+                newLines(blankLines);
+                if (lead > 0) {
+                    throw error("wrong input formatting");
+                }
+                settings("*" + restOfLine());
+                configured = true;
+                blankLines = 0;
+            } else if (!configured) {
+                throw error("wrong number of arguments");
+            } else {
+                if (badBlank || tabs) {
+                    throw error("whitespace other than spaces in message");
+                }
+                newLines(blankLines);
+                if (_pool == null) {
+                    convertLine(c);
+                } else {
+                    _current.message((char) c + restOfLine());
+                }
+                blankLines = 0;
+                spaceOnly = false;
+            }
+        }
+    }
+
+    /** Set up for the messages following the settings line SETTINGS:
+     *  the machine, or, when processing in parallel, a new block. */
+    private void settings(String settings) throws IOException {
+        if (_pool == null) {
+            _setUp.accept(_machine, settings);
+        } else {
+            dispatch();
+            _current = new Block(settings);
+        }
+    }
+
+    /** Start converting the block being read, if any, and write out
+     *  finished blocks until no more than _ahead are pending. */
+    private void dispatch() throws IOException {
+        if (_current != null) {
+            _pending.add(_pool.submit(_current, _current));
+            _current = null;
+        }
+        drain(_ahead);
+    }
+
+    /** Write out blocks, waiting for each to finish, until at most LEFT
+     *  are pending, reporting the first error among them. */
+    private void drain(int left) throws IOException {
+        while (_pending.size() > left) {
+            Block block;
+            try {
+                block = _pending.peek().get();
+            } catch (InterruptedException excp) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+            _pending.remove();
+            long start = System.nanoTime();
+            CharSequence out = block.output();
+            for (int i = 0; i < out.length(); i += 1) {
+                _out.write(out.charAt(i));
+            }
+            if (_metrics != null) {
+                _metrics.output(start);
+            }
+            if (block.failure() != null) {
+                throw block.failure();
+            }
+        }
+    }
+
+    /** A settings line and what follows it up to the next one, read
+     *  ahead to be converted on a pool thread. */
+    private class Block implements Runnable {
+
+        /** A block starting with settings line SETTINGS, or with no
+         *  settings if SETTINGS is null. */
+        Block(String settings) {
+            _settings = settings;
+        }
+
+        /** Add MSG as the next message line. */
+        void message(String msg) {
+            _lines.add(msg);
+        }
+
+        /** Add N blank lines. */
+        void newLines(long n) {
+            for (long i = 0; i < n; i += 1) {
+                _lines.add(null);
+            }
+        }
+
+        /** Convert my messages, recording the output up to the first
+         *  error, if any, and the error. */
+        @Override
+        public void run() {
+            Machine machine = new Machine(_machine.spec());
+            try {
+                if (_settings != null) {
+                    _setUp.accept(machine, _settings);
+                }
+                Alphabet alphabet = machine.alphabet();
+                int[] indices = new int[BUFFER];
+                for (String line : _lines) {
+                    if (line == null) {
+                        _output.append(NEWLINE);
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    int n = 0;
+                    int c;
+                    for (int i = 0; i < line.length();
+                         i += Character.charCount(c)) {
+                        c = line.codePointAt(i);
+                        if (c == ' ') {
+                            continue;
+                        }
+                        int index = alphabet.toInt(c);
+                        if (index < 0) {
+                            append(machine, indices, n);
+                            throw error("character '%c' not in alphabet", c);
+                        }
+                        if (n == indices.length) {
+                            indices = Arrays.copyOf(indices, 2 * n);
+                        }
+                        indices[n] = index;
+                        n += 1;
+                    }
+                    append(machine, indices, n);
+                    _output.append(NEWLINE);
+                    if (_metrics != null) {
+                        _metrics.converted(start);
+                    }
+                }
+            } catch (RuntimeException excp) {
+                _failure = excp;
+            }
+            if (_metrics != null) {
+                machine.reportTo(_metrics);
+            }
+        }
+
+        /** Convert the first N INDICES with MACHINE and append the
+         *  result to my output in groups of five. */
+        private void append(Machine machine, int[] indices, int n) {
+            Alphabet alphabet = machine.alphabet();
+            machine.convert(indices, 0, n, indices, 0);
+            for (int k = 0; k < n; k += 1) {
+                if (k > 0 && k % GROUP == 0) {
+                    _output.append(' ');
+                }
+                _output.appendCodePoint(alphabet.toCodePoint(indices[k]));
+            }
+        }
+
+        /** Return my output. */
+        CharSequence output() {
+            return _output;
+        }
+
+        /** Return the error that stopped my conversion, or null. */
+        RuntimeException failure() {
+            return _failure;
+        }
+
+        /** My settings line, or null. */
+        private final String _settings;
+        /** My message lines, with null for each blank line to copy. */
+        private final List<String> _lines = new ArrayList<String>();
+        /** My converted messages. */
+        private final StringBuilder _output = new StringBuilder();
+        /** The error that stopped my conversion, or null. */
+        private RuntimeException _failure;
+    }
+
+    /** Convert the message line whose first non-blank character is C,
+     *  writing it in groups of five as Main.printMessageLine does.  The
+     *  line is converted a buffer of characters at a time. */
+    private void convertLine(int c) throws IOException {
+        long start = System.nanoTime();
+        Alphabet alphabet = _machine.alphabet();
+        long count = 0;
+        int n = 0;
+        for (; c != -1 && !isLineEnd(c); c = _in.read()) {
+            if (c == ' ') {
+                continue;
+            }
+            int ch = codePoint(c);
+            int index = alphabet.toInt(ch);
+            if (index < 0) {
+                writeConverted(n, count);
+                throw error("character '%c' not in alphabet", ch);
+            }
+            if (n == _indices.length) {
+                count = writeConverted(n, count);
+                n = 0;
+            }
+            _indices[n] = index;
+            n += 1;
+        }
+        writeConverted(n, count);
+        skipLineEnd(c);
+        _out.newLine();
+        if (_metrics != null) {
+            _metrics.converted(start);
+            _machine.reportTo(_metrics);
+        }
+    }
+
+    /** Convert the first N characters of _indices and write them,
+     *  continuing groups of five from COUNT characters already written
+     *  on this line.  Return the count of characters then written. */
+    private long writeConverted(int n, long count) throws IOException {
+        Alphabet alphabet = _machine.alphabet();
+        _machine.convert(_indices, 0, n, _indices, 0);
+        for (int k = 0; k < n; k += 1) {
+            if (count > 0 && count % GROUP == 0) {
+                _out.write(' ');
+            }
+            write(alphabet.toCodePoint(_indices[k]));
+            count += 1;
+        }
+        return count;
+    }
+
+    /** Return the code point that starts with C, which was just read,
+     *  consuming the rest of it if it is a surrogate pair. */
+    private int codePoint(int c) throws IOException {
+        if (Character.isHighSurrogate((char) c)
+            && Character.isLowSurrogate((char) _in.peek())) {
+            return Character.toCodePoint((char) c, (char) _in.read());
+        }
+        return c;
+    }
+
+    /** Write code point CH. */
+    private void write(int ch) throws IOException {
+        if (Character.isBmpCodePoint(ch)) {
+            _out.write((char) ch);
+        } else {
+            _out.write(Character.highSurrogate(ch));
+            _out.write(Character.lowSurrogate(ch));
+        }
+    }
+
+    /** Return the rest of the current line, consuming its end. */
+    private String restOfLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        for (c = _in.read(); c != -1 && !isLineEnd(c); c = _in.read()) {
+            line.append((char) c);
+        }
+        skipLineEnd(c);
+        return line.toString();
+    }
+
+    /** Having just read C, which ends a line (or is -1), consume the
+     *  line feed of a carriage-return/line-feed pair. */
+    private void skipLineEnd(int c) throws IOException {
+        if (c == '\r' && _in.peek() == '\n') {
+            _in.read();
+        }
+    }
+
+    /** Write N line separators, or, when processing in parallel, add
+     *  them to the block being read. */
+    private void newLines(long n) throws IOException {
+        if (_pool != null && n > 0) {
+            if (_current == null) {
+                _current = new Block(null);
+            }
+            _current.newLines(n);
+            return;
+        }
+        for (long i = 0; i < n; i += 1) {
+            _out.newLine();
+        }
+    }
+
+    /** Return true iff C ends a line, as for Scanner.nextLine. */
+    private static boolean isLineEnd(int c) {
+        return c == '\n' || c == '\r' || c == LINE_SEPARATOR
+            || c == PARAGRAPH_SEPARATOR || c == NEXT_LINE;
+    }
+
+    /** Return true iff C (possibly -1, for end of input) ends a token. */
+    private static boolean isTokenEnd(int c) {
+        return c == -1 || isLineEnd(c) || Character.isWhitespace(c);
+    }
+
+    /** Unicode line separator. */
+    private static final int LINE_SEPARATOR = 0x2028;
+    /** Unicode paragraph separator. */
+    private static final int PARAGRAPH_SEPARATOR = 0x2029;
+    /** Unicode next-line control. */
+    private static final int NEXT_LINE = 0x85;
+
+    /** Number of characters in each output group. */
+    private static final int GROUP = 5;
+
+    /** Number of characters converted at a time. */
+    private static final int BUFFER = 1024;
+
+    /** The line separator. */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** The machine that converts messages. */
+    private final Machine _machine;
+    /** Sets up _machine from a settings line. */
+    private final BiConsumer<Machine, String> _setUp;
+    /** Alphabet indices of message characters awaiting conversion. */
+    private final int[] _indices = new int[BUFFER];
+    /** Source of settings and messages. */
+    private final ChannelReader _in;
+    /** Destination of converted messages. */
+    private final ChannelWriter _out;
+    /** Converts blocks when processing in parallel, else null. */
+    private ExecutorService _pool;
+    /** Most blocks pending when processing in parallel. */
+    private int _ahead;
+    /** Blocks being converted, in input order. */
+    private ArrayDeque<Future<Block>> _pending;
+    /** The block being read, or null. */
+    private Block _current;
+    /** Where my work is recorded, or null. */
+    private Metrics _metrics;
+}
@@ -0,0 +1,217 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the StreamProcessor class.
+ *  @author Michelle
+ */
+public class StreamProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a two-rotor machine over ALPHA whose rotors are named after
+     *  its first and last characters. */
+    private Machine machine(Alphabet alpha) {
+        int[] chars = alpha.chars().codePoints().toArray();
+        String pairs = "";
+        for (int i = 0; i + 1 < chars.length; i += 2) {
+            pairs += "(" + new String(chars, i, 2) + ")";
+        }
+        Rotor reflector = new Reflector("R", new Permutation(pairs, alpha));
+        Rotor rotor = new MovingRotor("M",
+                new Permutation("(" + new String(chars, 1, chars.length - 1)
+                                + ")", alpha),
+                new String(chars, 0, 1));
+        return new Machine(alpha, 2, 1, Arrays.asList(reflector, rotor));
+    }
+
+    /** Return the output of processing INPUT, encoded in CHARSET, with
+     *  M, whose settings lines are "* R M C" for a character C. */
+    private String process(Machine m, String input, Charset charset)
+        throws IOException {
+        return process(m, input, charset, null, new ByteArrayOutputStream());
+    }
+
+    /** Return the output of processing INPUT, encoded in CHARSET, with
+     *  M as for process(M, INPUT, CHARSET), converting settings blocks
+     *  on POOL unless it is null, and leaving the output in OUT. */
+    private String process(Machine m, String input, Charset charset,
+                           ExecutorService pool, ByteArrayOutputStream out)
+        throws IOException {
+        ChannelReader reader = new ChannelReader(
+                Channels.newChannel(
+                        new ByteArrayInputStream(input.getBytes(charset))),
+                charset, 7);
+        ChannelWriter writer =
+            new ChannelWriter(Channels.newChannel(out), charset, 5);
+        StreamProcessor processor = new StreamProcessor(m, (mach, settings) -> {
+            String[] words = settings.split(" ");
+            mach.insertRotors(new String[] { words[1], words[2] });
+            mach.setRotors(words[3]);
+        }, reader, writer);
+        if (pool == null) {
+            processor.process();
+        } else {
+            processor.process(pool, 2);
+        }
+        return new String(out.toByteArray(), charset);
+    }
+
+    /** Return the output of processing INPUT with M, converting settings
+     *  blocks on POOL unless it is null, followed by "!" and the error
+     *  message if there was an error. */
+    private String outcome(Machine m, String input, ExecutorService pool)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            process(m, input, StandardCharsets.US_ASCII, pool, out);
+            return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        } catch (EnigmaException excp) {
+            return new String(out.toByteArray(), StandardCharsets.US_ASCII)
+                + "!" + excp.getMessage();
+        }
+    }
+
+    /** Return the result of setting M's rotor to SETTING and converting
+     *  each of MSGS in turn, in groups of five, one message per line. */
+    private String expected(Machine m, String setting, String... msgs) {
+        m.insertRotors(new String[] { "R", "M" });
+        m.setRotors(setting);
+        String result = "";
+        for (String msg : msgs) {
+            int[] converted =
+                m.convert(msg).replace(" ", "").codePoints().toArray();
+            for (int i = 0; i < converted.length; i += 5) {
+                result += (i > 0 ? " " : "") + new String(converted, i,
+                        Math.min(5, converted.length - i));
+            }
+            result += System.lineSeparator();
+        }
+        return result;
+    }
+
+    @Test
+    public void testFormat() throws IOException {
+        Machine m = machine(new Alphabet());
+        String nl = System.lineSeparator();
+        String expected = nl + nl
+            + expected(m, "C", "HELLO WORLD", "", "", "FOOBARBAZQUUX")
+            + expected(m, "Q", "ABC");
+        assertEquals(expected,
+                     process(m, "\n\n* R M C\nHELLO WORLD\n\n  \n"
+                             + "FOO BAR BAZ QUUX\r\n* R M Q\r\nABC\n\n\n\n",
+                             StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testNonAscii() throws IOException {
+        Machine m = machine(new Alphabet("\u00c4\u00d6\u00dcABC\u4e00\u4e01"));
+        assertEquals(expected(m, "A",
+                              "\u00c4\u00d6\u00dc AB C\u4e00\u4e01\u00c4"),
+                     process(m, "* R M A\n\u00c4\u00d6\u00dc AB C"
+                             + "\u4e00\u4e01\u00c4\n",
+                             StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSupplementary() throws IOException {
+        String chars = "AB\ud83d\ude00\ud83d\ude01\ud840\udc00\u4e00"
+            + "\ud83c\udf00\udbff\udfff";
+        Machine m = machine(new Alphabet(chars));
+        String input = "* R M \ud83d\ude01\n" + chars + " " + chars + "\n";
+        String expected = expected(m, "\ud83d\ude01", chars + chars);
+        assertEquals(expected, process(m, input, StandardCharsets.UTF_8));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            assertEquals(expected,
+                         process(m, input, StandardCharsets.UTF_8, pool,
+                                 new ByteArrayOutputStream()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        Machine m = machine(new Alphabet());
+        StringBuilder input = new StringBuilder("\n");
+        for (int i = 0; i < 300; i += 1) {
+            input.append("* R M ").append((char) ('A' + i % 26)).append('\n');
+            for (int j = 0; j < i % 4; j += 1) {
+                input.append("HELLO WORLD ").append(i).append(i % 3 == 0
+                                                           ? "\n\n" : "\n");
+            }
+        }
+        String text = input.toString().replaceAll("[0-9]", "Q");
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(outcome(m, text, null), outcome(m, text, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelErrors() throws IOException {
+        Machine m = machine(new Alphabet());
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (String text : new String[] {
+                    "* R M A\nHELLO\n\n* R M B\nHEL1O\n* R M C\nABC\n",
+                    "* R M A\nHELLO\n* R M B\nHELLO\n\n \t\n* R M C\n",
+                    "* R M A\nHELLO\n\n   * R M B\nHELLO\n",
+                    "\n\nHELLO\n* R M A\n",
+                }) {
+                String serial = outcome(m, text, null);
+                assertTrue(serial, serial.contains("!"));
+                assertEquals(serial, outcome(m, text, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLongLines() throws IOException {
+        Machine m = machine(new Alphabet());
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 2500; i += 1) {
+            msg.append((char) ('A' + i * 7 % 26));
+        }
+        String expected = expected(m, "C", msg.toString(), "AB");
+        String text = "* R M C\n" + msg + "\nA B\n";
+        assertEquals(expected, outcome(m, text, null));
+        String bad = "* R M C\n" + msg + "1" + msg + "\n";
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            assertEquals(expected, outcome(m, text, pool));
+            String serial = outcome(m, bad, null);
+            assertEquals(expected.substring(0, expected.indexOf('\n')),
+                         serial.substring(0, serial.indexOf('!')));
+            assertEquals(serial, outcome(m, bad, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNoSettings() throws IOException {
+        process(machine(new Alphabet()), "HELLO\n", StandardCharsets.UTF_8);
+    }
+
+}
@@ -1,6 +1,8 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /** Utility definitions for use in unit tests.
  *  @author P. N. Hilfinger
@@ -54,6 +56,50 @@ class TestUtils {
         NAVALA_MAP.put("Gamma", "FSOKANUERHMBTIYCWLQPZXVGJD");
     }
 
+    /** The notches of the naval moving rotors. */
+    static final HashMap<String, String> NAVAL_NOTCHES = new HashMap<>();
+    static {
+        NAVAL_NOTCHES.put("I", "Q");
+        NAVAL_NOTCHES.put("II", "E");
+        NAVAL_NOTCHES.put("III", "V");
+        NAVAL_NOTCHES.put("IV", "J");
+        NAVAL_NOTCHES.put("V", "Z");
+        NAVAL_NOTCHES.put("VI", "ZM");
+        NAVAL_NOTCHES.put("VII", "ZM");
+        NAVAL_NOTCHES.put("VIII", "ZM");
+    }
+
+    /** Return a description of a naval machine over UPPER with the
+     *  rotors in NAVALA named NAMES: B and C are reflectors, Beta and
+     *  Gamma fixed rotors, and the rest moving rotors notched as in
+     *  NAVAL_NOTCHES.  The machine has three pawls, and a slot for a
+     *  fixed rotor only if NAMES includes one. */
+    static MachineSpec navalSpec(String... names) {
+        List<Rotor> rotors = new ArrayList<>();
+        int numRotors = 4;
+        for (String name : names) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            if (name.equals("B") || name.equals("C")) {
+                rotors.add(new Reflector(name, perm));
+            } else if (name.equals("Beta") || name.equals("Gamma")) {
+                rotors.add(new FixedRotor(name, perm));
+                numRotors = 5;
+            } else {
+                rotors.add(new MovingRotor(name, perm,
+                                           NAVAL_NOTCHES.get(name)));
+            }
+        }
+        return new MachineSpec(UPPER, numRotors, 3, rotors);
+    }
+
+    /** Return MSG converted by a machine of SPEC set up by SETTINGS, as
+     *  Main.setUp does, without blanks. */
+    static String encipher(MachineSpec spec, String settings, String msg) {
+        Machine m = new Machine(spec);
+        Main.setUp(m, settings);
+        return m.convert(msg).replace(" ", "");
+    }
+
     /** The naval rotors in the B (1) setting. */
     static final HashMap<String, String> NAVALB = new HashMap<>();
     static {
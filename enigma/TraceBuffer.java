@@ -0,0 +1,121 @@
+package enigma;
+
+import java.io.IOException;
+
+import static enigma.EnigmaException.*;
+
+/** A preallocated ring of fixed-width records, one per character
+ *  converted by a traced Machine.  For a machine with N rotor slots, each
+ *  record holds, in order, the settings of rotors 1 .. N-1 after
+ *  advancing, the input character, the result of the plugboard, the
+ *  result of each rotor going forward (rotor N-1 down to the reflector),
+ *  the result of each rotor going backward (rotor 1 up to N-1), and the
+ *  output character after the plugboard: 3N+1 values in all, characters
+ *  given as alphabet indices.
+ *
+ *  When the ring fills, its records are passed to a sink if there is
+ *  one, and otherwise the oldest are overwritten.
+ *  @author Michelle
+ */
+class TraceBuffer {
+
+    /** A buffer holding up to CAPACITY records for a machine with
+     *  NUMROTORS rotor slots, passing them on to SINK (which may be null)
+     *  when full. */
+    TraceBuffer(int numRotors, int capacity, TraceSink sink) {
+        _numRotors = numRotors;
+        _width = width(numRotors);
+        _records = new int[capacity * _width];
+        _sink = sink;
+    }
+
+    /** Return the width of a record for a machine with NUMROTORS rotor
+     *  slots. */
+    static int width(int numRotors) {
+        return 3 * numRotors + 1;
+    }
+
+    /** Return the number of rotor slots of the machines I trace. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of values in each of my records. */
+    int width() {
+        return _width;
+    }
+
+    /** Return the number of records I currently hold. */
+    int size() {
+        return _count;
+    }
+
+    /** Return the array holding my records.  The record returned by
+     *  claim() starts at the index it returns. */
+    int[] records() {
+        return _records;
+    }
+
+    /** Reserve space for a new record, to be filled in by the caller,
+     *  and return the index in records() at which it starts. */
+    int claim() {
+        if (_count * _width == _records.length) {
+            if (_sink != null) {
+                flush();
+            } else {
+                _start = (_start + _width) % _records.length;
+                _count -= 1;
+            }
+        }
+        int result = (_start + _count * _width) % _records.length;
+        _count += 1;
+        return result;
+    }
+
+    /** Pass all my records, oldest first, to SINK, and flush it. */
+    void writeTo(TraceSink sink) {
+        try {
+            for (int i = 0; i < _count; i += 1) {
+                sink.accept(_records, (_start + i * _width) % _records.length,
+                            _width);
+            }
+            sink.flush();
+        } catch (IOException excp) {
+            throw error("could not write trace: %s", excp.getMessage());
+        }
+    }
+
+    /** Pass all my records to my sink, if I have one, and discard
+     *  them. */
+    void flush() {
+        if (_sink != null) {
+            writeTo(_sink);
+            _start = _count = 0;
+        }
+    }
+
+    /** Pass all my records to my sink, if I have one, and close it. */
+    void close() {
+        if (_sink != null) {
+            flush();
+            try {
+                _sink.close();
+            } catch (IOException excp) {
+                throw error("could not write trace: %s", excp.getMessage());
+            }
+        }
+    }
+
+    /** Number of rotor slots of the traced machine. */
+    private final int _numRotors;
+    /** Number of values per record. */
+    private final int _width;
+    /** The ring of records. */
+    private final int[] _records;
+    /** Where full rings go, or null. */
+    private final TraceSink _sink;
+    /** Index of the oldest record. */
+    private int _start;
+    /** Number of records held. */
+    private int _count;
+}
@@ -0,0 +1,110 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the TraceBuffer class and its sinks.
+ *  @author Michelle
+ */
+public class TraceBufferTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a three-slot machine over UPPER holding B, Beta and I at
+     *  setting "AQ". */
+    private Machine machine() {
+        Machine m = new Machine(UPPER, 3, 1, Arrays.asList(
+                new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)),
+                new FixedRotor("Beta",
+                               new Permutation(NAVALA.get("Beta"), UPPER)),
+                new MovingRotor("I", new Permutation(NAVALA.get("I"), UPPER),
+                                "Q")));
+        m.insertRotors(new String[] { "B", "Beta", "I" });
+        m.setRotors("AQ");
+        m.setPlugboard(new Permutation("(AZ)", UPPER));
+        return m;
+    }
+
+    @Test
+    public void testVerboseFormat() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Machine m = machine();
+        m.setTrace(new TraceBuffer(3, 2,
+                new TraceFormatter(new PrintStream(out), UPPER, 3, false)));
+        String result = m.convert("ZAB");
+        m.trace().flush();
+        String nl = System.lineSeparator();
+        assertEquals("[AR] Z -> A -> " + result.charAt(0) + nl
+                     + "[AS] A -> Z -> " + result.charAt(1) + nl
+                     + "[AT] B -> B -> " + result.charAt(2) + nl,
+                     out.toString());
+        assertEquals(0, m.trace().size());
+    }
+
+    @Test
+    public void testRing() {
+        Machine m = machine();
+        m.setTrace(new TraceBuffer(3, 4, null));
+        m.convert("ABCDEFGHIJ");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m.trace().writeTo(
+                new TraceFormatter(new PrintStream(out), UPPER, 3, false));
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("[AX] G -> G -> "));
+        assertTrue(lines[3].startsWith("[AA] J -> J -> "));
+    }
+
+    @Test
+    public void testLog() throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        Machine m = machine();
+        m.setTrace(new TraceBuffer(3, 3,
+                new TraceFormatter(new PrintStream(text), UPPER, 3, true)));
+        m.convert("HELLOWORLD");
+        m.trace().flush();
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        m = machine();
+        m.setTrace(new TraceBuffer(3, 3, new TraceLog(log, UPPER, 3)));
+        m.convert("HELLOWORLD");
+        m.trace().flush();
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        TraceLog.decode(new DataInputStream(
+                new ByteArrayInputStream(log.toByteArray())),
+                new PrintStream(decoded), true);
+        assertEquals(text.toString(), decoded.toString());
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        boolean[] closed = new boolean[1];
+        ByteArrayOutputStream log = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        Machine m = machine();
+        m.setTrace(new TraceBuffer(3, 3, new TraceLog(log, UPPER, 3)));
+        m.convert("HELLO");
+        m.trace().close();
+        assertTrue(closed[0]);
+        assertEquals(0, m.trace().size());
+        assertTrue(log.size() > 0);
+    }
+
+}
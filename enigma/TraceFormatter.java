@@ -0,0 +1,76 @@
+package enigma;
+
+import java.io.PrintStream;
+
+/** A TraceSink that prints records in the human-readable form of
+ *  --verbose: the rotor settings, then the input, the character after
+ *  the plugboard and the output, as in "[AXLE] F -> F -> Q".  In detailed
+ *  form, the result of every rotor is shown as well.
+ *  @author Michelle
+ */
+class TraceFormatter implements TraceSink {
+
+    /** A formatter that prints records for machines with NUMROTORS rotor
+     *  slots over ALPHABET to OUT, in detail if DETAIL. */
+    TraceFormatter(PrintStream out, Alphabet alphabet, int numRotors,
+                   boolean detail) {
+        _out = out;
+        _alphabet = alphabet;
+        _numRotors = numRotors;
+        _detail = detail;
+    }
+
+    @Override
+    public void accept(int[] records, int off, int width) {
+        int k = off;
+        _out.print('[');
+        for (int r = 1; r < _numRotors; r += 1) {
+            print(records[k++]);
+        }
+        _out.print("] ");
+        print(records[k++]);
+        _out.print(" -> ");
+        print(records[k++]);
+        if (_detail) {
+            for (int i = 0; i < 2 * _numRotors - 1; i += 1) {
+                _out.print(" -> ");
+                print(records[k++]);
+            }
+        } else {
+            k += 2 * _numRotors - 1;
+        }
+        _out.print(" -> ");
+        print(records[k]);
+        _out.println();
+    }
+
+    /** Print the character whose index is INDEX. */
+    private void print(int index) {
+        int ch = _alphabet.toCodePoint(index);
+        if (Character.isBmpCodePoint(ch)) {
+            _out.print((char) ch);
+        } else {
+            _out.print(Character.toChars(ch));
+        }
+    }
+
+    @Override
+    public void flush() {
+        _out.flush();
+    }
+
+    /** Flush only, since my stream is typically the standard error. */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /** Where I print. */
+    private final PrintStream _out;
+    /** Alphabet of the traced machine. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots of the traced machine. */
+    private final int _numRotors;
+    /** True if every rotor's result is printed. */
+    private final boolean _detail;
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import static enigma.EnigmaException.*;
+
+/** A TraceSink that writes records to a compact binary log, and a
+ *  program that decodes such a log into the --verbose format.  The log
+ *  starts with MAGIC, the number of rotor slots, and the alphabet (its
+ *  length in chars, then its chars); each record follows as its values,
+ *  which are alphabet indices, written as unsigned 16-bit numbers.  So
+ *  alphabets of more than 65536 characters cannot be logged.
+ *  @author Michelle
+ */
+class TraceLog implements TraceSink {
+
+    /** A log of records for machines with NUMROTORS rotor slots over
+     *  ALPHABET, written to OUT. */
+    TraceLog(OutputStream out, Alphabet alphabet, int numRotors)
+        throws IOException {
+        if (alphabet.size() > MAX_SIZE) {
+            throw error("alphabet too large to trace");
+        }
+        _out = new DataOutputStream(new BufferedOutputStream(out));
+        _out.writeInt(MAGIC);
+        _out.writeInt(numRotors);
+        _out.writeInt(alphabet.chars().length());
+        _out.writeChars(alphabet.chars());
+    }
+
+    @Override
+    public void accept(int[] records, int off, int width)
+        throws IOException {
+        for (int i = 0; i < width; i += 1) {
+            _out.writeChar(records[off + i]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _out.flush();
+    }
+
+    /** Flush and close my output stream. */
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+
+    /** Decode the log in file ARGS[0] to the standard output, showing
+     *  every rotor's result if ARGS[1] is "--detail". */
+    public static void main(String... args) {
+        if (args.length < 1 || args.length > 2
+            || (args.length == 2 && !args[1].equals("--detail"))) {
+            System.err.println("Usage: java enigma.TraceLog LOG [--detail]");
+            System.exit(1);
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(args[0])))) {
+            decode(in, System.out, args.length == 2);
+        } catch (IOException | EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Print the records of the log read from IN to OUT, in detail if
+     *  DETAIL. */
+    static void decode(DataInputStream in, PrintStream out, boolean detail)
+        throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw error("not a trace log");
+        }
+        int numRotors = in.readInt();
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = in.readChar();
+        }
+        TraceFormatter formatter =
+            new TraceFormatter(out, new Alphabet(new String(chars)),
+                               numRotors, detail);
+        int[] record = new int[TraceBuffer.width(numRotors)];
+        while (true) {
+            try {
+                record[0] = in.readChar();
+            } catch (EOFException excp) {
+                break;
+            }
+            for (int i = 1; i < record.length; i += 1) {
+                record[i] = in.readChar();
+            }
+            formatter.accept(record, 0, record.length);
+        }
+        formatter.flush();
+    }
+
+    /** Largest alphabet whose indices fit in a record. */
+    static final int MAX_SIZE = 1 << 16;
+
+    /** First four bytes of a log ("ETRC"). */
+    static final int MAGIC = 0x45545243;
+
+    /** Where records are written. */
+    private final DataOutputStream _out;
+}
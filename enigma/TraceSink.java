@@ -0,0 +1,22 @@
+package enigma;
+
+import java.io.IOException;
+
+/** A destination for the per-character records gathered by a
+ *  TraceBuffer.
+ *  @author Michelle
+ */
+interface TraceSink {
+
+    /** Accept the record of WIDTH values starting at RECORDS[OFF].  Its
+     *  layout is described in TraceBuffer. */
+    void accept(int[] records, int off, int width) throws IOException;
+
+    /** Pass on any records I am holding. */
+    void flush() throws IOException;
+
+    /** Pass on any records I am holding, and release whatever I opened
+     *  to write them. */
+    void close() throws IOException;
+
+}
@@ -14,9 +14,21 @@ public class UnitTest {
             System.exit(textui.runClasses(PermutationTest.class,
                     MovingRotorTest.class));
         }
-        System.exit(textui.runClasses(PermutationTest.class,
+        System.exit(textui.runClasses(AlphabetTest.class,
+                PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                RotorTest.class,
+                MachineTest.class,
+                StreamProcessorTest.class,
+                TraceBufferTest.class,
+                ServerTest.class,
+                BombeTest.class,
+                SolverTest.class,
+                ConfigImageTest.class,
+                ByteProcessorTest.class,
+                LockstepTest.class,
+                KeystreamCacheTest.class,
+                MetricsTest.class));
     }
 
 
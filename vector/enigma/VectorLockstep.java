@@ -0,0 +1,106 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A Lockstep engine that steps and converts as many lanes at a time as
+ *  fit in the platform's preferred integer vector, using gathers for the
+ *  table lookups.  Lanes beyond the last full vector are stepped one at
+ *  a time.  It needs the incubating module jdk.incubator.vector, so it
+ *  is kept out of the enigma directory and reached only through
+ *  Lockstep.create.
+ *  @author Michelle
+ */
+final class VectorLockstep extends Lockstep {
+
+    /** An engine with LANES lanes for machines described by SPEC. */
+    VectorLockstep(MachineSpec spec, int lanes) {
+        super(spec, lanes);
+        _index = new int[SPECIES.length()];
+        _plugBase = new int[lanes];
+        for (int lane = 0; lane < lanes; lane += 1) {
+            _plugBase[lane] = lane * _size;
+        }
+    }
+
+    @Override
+    void convert(int[] in, int[] out, int steps) {
+        int lanes = lanes();
+        int full = SPECIES.loopBound(lanes);
+        for (int t = 0, row = 0; t < steps; t += 1, row += lanes) {
+            for (int lane = 0; lane < full; lane += SPECIES.length()) {
+                advance(lane);
+                IntVector c = IntVector.fromArray(SPECIES, in, row + lane);
+                IntVector plug = IntVector.fromArray(SPECIES, _plugBase, lane);
+                IntVector p = gather(_plug, plug.add(c));
+                for (int i = _slots - 1; i >= 0; i -= 1) {
+                    p = through(_forward, i, lane, p);
+                }
+                for (int i = 1; i < _slots; i += 1) {
+                    p = through(_inverse, i, lane, p);
+                }
+                gather(_plug, plug.add(p)).intoArray(out, row + lane);
+            }
+            for (int lane = full; lane < lanes; lane += 1) {
+                out[row + lane] = convert(lane, in[row + lane]);
+            }
+        }
+    }
+
+    /** Return the images of P, for the vector of lanes starting at LANE,
+     *  under the wirings in TABLE of the rotors in slot SLOT at their
+     *  offsets. */
+    private IntVector through(int[] table, int slot, int lane, IntVector p) {
+        IntVector offset = IntVector.fromArray(SPECIES, _offset[slot], lane);
+        IntVector q = p.add(offset);
+        q = q.sub(_size, q.compare(VectorOperators.GE, _size));
+        IntVector base = IntVector.fromArray(SPECIES, _base[slot], lane);
+        IntVector r = gather(table, base.add(q)).sub(offset);
+        return r.add(_size, r.compare(VectorOperators.LT, 0));
+    }
+
+    /** Advance the moving rotors of the vector of lanes starting at LANE,
+     *  as Lockstep.advance does for one lane. */
+    private void advance(int lane) {
+        int last = _slots - 1;
+        VectorMask<Integer> carry = SPECIES.maskAll(true);
+        for (int i = last; i >= _firstMoving; i -= 1) {
+            IntVector setting = IntVector.fromArray(SPECIES, _setting[i], lane);
+            VectorMask<Integer> notch = SPECIES.maskAll(false);
+            if (i > _firstMoving) {
+                IntVector base = IntVector.fromArray(SPECIES, _base[i], lane);
+                notch = gather(_notches, base.add(setting))
+                    .compare(VectorOperators.NE, 0);
+            }
+            VectorMask<Integer> moves = carry.or(notch);
+            step(setting, moves).intoArray(_setting[i], lane);
+            step(IntVector.fromArray(SPECIES, _offset[i], lane), moves)
+                .intoArray(_offset[i], lane);
+            carry = notch;
+        }
+    }
+
+    /** Return POSN advanced by one, modulo the alphabet size, in the
+     *  lanes set in MOVES. */
+    private IntVector step(IntVector posn, VectorMask<Integer> moves) {
+        IntVector next = posn.add(1, moves);
+        return next.blend(0, next.compare(VectorOperators.EQ, _size));
+    }
+
+    /** Return the elements of TABLE at INDICES. */
+    private IntVector gather(int[] table, IntVector indices) {
+        indices.intoArray(_index, 0);
+        return IntVector.fromArray(SPECIES, table, 0, _index, 0);
+    }
+
+    /** The vector shape used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Indices for a gather. */
+    private final int[] _index;
+    /** The offset in _plug of each lane's plugboard. */
+    private final int[] _plugBase;
+}